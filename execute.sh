@@ -11,6 +11,13 @@ dateMark="$(date +%s)"
 
 alpha=0.15
 
+#Class-data sharing archive created by "mvn -P appcds package". It needs
+#JDK 13 or later, older JVMs run without it.
+cds="-XX:SharedArchiveFile=javaCSP.jsa -Xshare:auto"
+if [ ! -f javaCSP.jsa ] || ! java ${cds} -version > /dev/null 2>&1; then
+	cds=""
+fi
+
 
 for j in $(seq 1 $num_sequences)
 do
@@ -18,7 +25,7 @@ do
 
 	customLog="${customDir}${log}"
 
-	java -jar javaCSP.jar ${customDir} ${customLog} ${config} ${alpha} >> "${customLog}/${dateMark}.log"
+	java ${cds} -jar javaCSP.jar ${customDir} ${customLog} ${config} ${alpha} >> "${customLog}/${dateMark}.log"
 done;
 
 echo "############################################"
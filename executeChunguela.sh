@@ -11,6 +11,15 @@ config=./config/$1
 dateMark="$(date +%s)"
 alpha=0.15
 
+#The class-data sharing archive needs JDK 13 or later, and only works with
+#the JDK that created it. Point JAVA to that JDK to use it, the default JDK 8
+#runs without the archive.
+java=${JAVA:-/usr/java/jdk1.8.0_45/bin/java}
+cds="-XX:SharedArchiveFile=javaCSP.jsa -Xshare:auto"
+if [ ! -f javaCSP.jsa ] || ! "${java}" ${cds} -version > /dev/null 2>&1; then
+	cds=""
+fi
+
 
 for j in $(seq 1 $num_sequences)
 do
@@ -22,7 +31,7 @@ do
 	
 	echo ${customLog}
 
-	/usr/java/jdk1.8.0_45/bin/java -jar javaCSP.jar ${customDir} ${customLog} ${config} ${alpha} >> "${customLog}/${dateMark}.log"
+	${java} ${cds} -jar javaCSP.jar ${customDir} ${customLog} ${config} ${alpha} >> "${customLog}/${dateMark}.log"
 
 done;
 
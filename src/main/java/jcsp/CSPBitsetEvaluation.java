@@ -0,0 +1,187 @@
+package jcsp;
+
+/**
+ * Contains evaluation functions over option bitsets: for each option,
+ * the sequence is encoded as a long[] where bit i is set when the car at
+ * position i requires the option. Window occupancy is then computed with
+ * shifts and Long.bitCount instead of walking the requirements matrix.
+ *
+ * Bitsets are sized with enough trailing words so windows running past
+ * the end of the sequence only read zero bits.
+ * @author imoya
+ *
+ */
+public class CSPBitsetEvaluation {
+
+	public static final int WORD_BITS = Long.SIZE;
+
+	private static final int WORD_SHIFT = 6;
+
+	/**
+	 * Number of words needed for encoding any window of the given problem.
+	 * @param csp
+	 * @return
+	 */
+	public static int getNumWords(CSPProblem csp) {
+		return ((csp.getCarsDemand() + csp.getMaxQ()) >>> WORD_SHIFT) + 1;
+	}
+
+	/**
+	 * Encodes the given sequence as one bitset per option.
+	 * 	[numOptions] [numWords].
+	 * @param csp
+	 * @param sequence
+	 * @return
+	 */
+	public static long[][] createOptionBitsets(CSPProblem csp, int[] sequence) {
+		long[][] bits = new long [csp.getNumOptions()][getNumWords(csp)];
+
+		writeCars(csp, sequence, bits, 0, csp.getCarsDemand()-1);
+
+		return bits;
+	}
+
+	/**
+	 * Rewrites the bits of the cars placed between both indexes. Both
+	 * indexes are inclusive.
+	 * @param csp
+	 * @param sequence
+	 * @param bits
+	 * @param beginIndex
+	 * @param endIndex
+	 */
+	public static void writeCars(CSPProblem csp, int[] sequence, long[][] bits,
+			int beginIndex, int endIndex) {
+		final long[][] optionMasks = csp.getOptionMasks();
+		final int numOptions = csp.getNumOptions();
+
+		for (int car=beginIndex; car<=endIndex; car++) {
+			final long[] mask = optionMasks[sequence[car]];
+			final int word = car >>> WORD_SHIFT;
+			final long carBit = 1L << car;
+
+			for (int option=0; option<numOptions; option++) {
+				long required = (mask[option >>> WORD_SHIFT] >>> option) & 1L;
+				bits[option][word] = (bits[option][word] & ~carBit)
+						| (-required & carBit);
+			}
+		}
+	}
+
+	/**
+	 * Returns 1 if the car at the given position requires the option
+	 * encoded by the bitset, 0 otherwise.
+	 * @param bits
+	 * @param position
+	 * @return
+	 */
+	public static int requires(long[] bits, int position) {
+		return (int)(bits[position >>> WORD_SHIFT] >>> position) & 1;
+	}
+
+	/**
+	 * Number of set bits in the window starting at the given position.
+	 * @param bits
+	 * @param beginIndex
+	 * @param length
+	 * @return
+	 */
+	public static int countWindow(long[] bits, int beginIndex, int length) {
+		final int endIndex = beginIndex+length;
+		final int lastWord = (endIndex-1) >>> WORD_SHIFT;
+
+		int word = beginIndex >>> WORD_SHIFT;
+		long mask = -1L << beginIndex;
+		int count = 0;
+
+		while(word<lastWord) {
+			count+=Long.bitCount(bits[word] & mask);
+			mask = -1L;
+			word++;
+		}
+
+		//Shifting by -endIndex keeps the bits below endIndex.
+		count+=Long.bitCount(bits[word] & mask & (-1L >>> -endIndex));
+
+		return count;
+	}
+
+	/**
+	 * For each option, number of cars requiring it in the window of
+	 * size q starting at each position. Option-major:
+	 * 	[numOptions * carsDemand].
+	 * @param csp
+	 * @param bits
+	 * @return
+	 */
+	public static byte[] createOccupancy(CSPProblem csp, long[][] bits) {
+		final int carsDemand = csp.getCarsDemand();
+		byte[] occupancy = new byte [csp.getNumOptions()*carsDemand];
+
+		for (int option=0; option<csp.getNumOptions(); option++) {
+			final int q = csp.getQ(option);
+			final long[] optionBits = bits[option];
+			final int offset = option*carsDemand;
+
+			for (int car=0; car<carsDemand; car++) {
+				occupancy[offset+car] = (byte)countWindow(optionBits, car, q);
+			}
+		}
+
+		return occupancy;
+	}
+
+	/**
+	 * Derives the excess from the occupancy: a window only counts when its 
+	 * first car requires the option. Option-major:
+	 * 	[numOptions * carsDemand].
+	 * @param csp
+	 * @param bits
+	 * @param occupancy
+	 * @return
+	 */
+	public static byte[] createExcess(CSPProblem csp, long[][] bits,
+			byte[] occupancy) {
+		final int carsDemand = csp.getCarsDemand();
+		byte[] excess = new byte [csp.getNumOptions()*carsDemand];
+
+		for (int option=0; option<csp.getNumOptions(); option++) {
+			final int p = csp.getP(option);
+			final long[] optionBits = bits[option];
+			final int offset = option*carsDemand;
+
+			for (int car=0; car<carsDemand; car++) {
+				excess[offset+car] = (byte)(requires(optionBits, car)
+						* Math.max(0, occupancy[offset+car]-p));
+			}
+		}
+
+		return excess;
+	}
+
+	/**
+	 * Full evaluation of a sequence using only its option bitsets.
+	 * @param csp
+	 * @param sequence
+	 * @return
+	 */
+	public static int evaluate(CSPProblem csp, int[] sequence) {
+		final long[][] bits = createOptionBitsets(csp, sequence);
+		final int carsDemand = csp.getCarsDemand();
+
+		int collisions = 0;
+
+		for (int option=0; option<csp.getNumOptions(); option++) {
+			final int p = csp.getP(option);
+			final int q = csp.getQ(option);
+			final long[] optionBits = bits[option];
+
+			for (int car=0; car<carsDemand; car++) {
+				collisions+=requires(optionBits, car)
+						* Math.max(0, countWindow(optionBits, car, q)-p);
+			}
+		}
+
+		return collisions;
+	}
+}
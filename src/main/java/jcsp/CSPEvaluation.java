@@ -1,310 +1,500 @@
 package jcsp;
 
-import jcsp.util.functions.ArrayFunctions;
-
 /**
  * Contains evaluation functions for CSP instances when using operators.
+ *
+ * Every option keeps an occupancy counter for the window starting at each
+ * position, so operators only adjust the counters of the affected windows
+ * and excess is derived as max(0, occupancy - p). Excess and occupancy 
+ * are stored option-major in flat byte arrays, so the counters of option o 
+ * start at offset o*carsDemand. Requirements are read 
+ * from the option bitsets of the sequence (see {@link CSPBitsetEvaluation}), 
+ * which must be already updated when these functions are called.
  * @author imoya
  *
  */
 public class CSPEvaluation {
 
 	/**
-	 * Both indexes are inclusive.
-	 * @param sequence
-	 * @param beginIndexFirst
-	 * @param endIndexFirst
-	 * @param option
+	 * Refreshes the excess of the windows starting between both indexes
+	 * from their occupancy counters. Both indexes are inclusive.
+	 * @param optionBits
+	 * @param beginIndex
+	 * @param endIndex
 	 * @param excess
-	 * @param q
-	 * @return
+	 * @param occupancy
+	 * @param offset
+	 * @param p
+	 * @param conflicts
+	 * @return the variation in the number of collisions.
 	 */
-	private static int countCollisions(CSPProblem csp, int[] sequence, int beginIndexFirst,
-			int endIndexFirst, int option, int[][] excess, int p, int q
+	private static int refreshCollisions(long[] optionBits,
+			int beginIndex, int endIndex, byte[] excess, byte[] occupancy, 
+			int offset, int p, ConflictIndex conflicts
 		) {
-		int currentColissions = 0;
+		int variation = 0;
 
-		int[][] requirements = csp.getRequirements();
-		final int carsDemand = csp.getCarsDemand();
-		
-		for (int car=beginIndexFirst; car<=endIndexFirst; car++) {
+		for (int car=beginIndex; car<=endIndex; car++) {
 
-			if(requirements[sequence[car]][option] == 0) {
-				excess[option][car]=0;
-				continue;
-			}
-			
-			int occurrences = 0;
-			
-			int nextCar = 0;
-			while(nextCar<q && car+nextCar < carsDemand) {
-				occurrences+=requirements[sequence[car+nextCar]][option];
-				nextCar++;
-			}
-			
 			//P+
-			if (occurrences>p) {
-				int collisions = occurrences-p;
-				excess[option][car]=collisions;
-				currentColissions+=collisions;
-			} else {
-				excess[option][car]=0;
-			}
+			int collisions = CSPBitsetEvaluation.requires(optionBits, car)
+					* Math.max(0, occupancy[offset+car]-p);
+
+			variation+=collisions-excess[offset+car];
+			conflicts.update(car, excess[offset+car], collisions);
+			excess[offset+car]=(byte)collisions;
 		}
-		
-		//New fitness is equal to previous fitness minus the different 
-		//between previous and the current collisions. 
-		
-		//If new collisions are fewer than the previous ones, the 
-		//fitness is lower (better).
-		return currentColissions;
+
+		return variation;
 	}
-	
-	
+
+	/**
+	 * Recomputes the occupancy of the windows starting between both
+	 * indexes from the option bitset. Both indexes are inclusive.
+	 * @param optionBits
+	 * @param beginIndex
+	 * @param endIndex
+	 * @param occupancy
+	 * @param offset
+	 * @param q
+	 */
+	private static void countOccupancy(long[] optionBits,
+			int beginIndex, int endIndex, byte[] occupancy, int offset, int q
+		) {
+		for (int car=beginIndex; car<=endIndex; car++) {
+			occupancy[offset+car] = (byte)CSPBitsetEvaluation.countWindow(
+					optionBits, car, q);
+		}
+	}
+
+	/**
+	 * Adds the given variation to the occupancy of the windows starting
+	 * between both indexes. Both indexes are inclusive.
+	 * @param occupancy
+	 * @param beginIndex
+	 * @param endIndex
+	 * @param variation
+	 */
+	private static void shiftOccupancy(byte[] occupancy, int beginIndex,
+			int endIndex, int variation) {
+		for (int car=beginIndex; car<=endIndex; car++) {
+			occupancy[car]+=variation;
+		}
+	}
+
 	/**
-	 * This method evaluates a modified sequence using swap at given 
+	 * This method evaluates a modified sequence using swap at given
 	 * indexes.
-	 * 
-	 * Given fitness and excess corresponds to the sequence prior to 
-	 * the application of the operator.
-	 * 
+	 *
+	 * Given collisions, excess and occupancy corresponds to the sequence
+	 * prior to the application of the operator.
+	 *
 	 * @param sequence
+	 * @param bits
 	 * @param first
 	 * @param second
-	 * @param prevFitness
+	 * @param prevCollisions
 	 * @param excess
+	 * @param occupancy
+	 * @param optionCollisions
+	 * @param conflicts
 	 * @return
 	 */
-	public static double evalSwap(CSPProblem csp, int[] sequence, int first, 
-			int second, double prevFitness, int[][] excess
+	public static int evalSwap(CSPProblem csp, int[] sequence, long[][] bits,
+			int first, int second, int prevCollisions, byte[] excess, 
+			byte[] occupancy, int[] optionCollisions, ConflictIndex conflicts
 		) {
-		int firstClass = sequence[first];
-		int secondClass = sequence[second];
-		
-		double fitness = prevFitness;
-		
-		int[][] requirements = csp.getRequirements();
-		
-		//For each options, the variation in the number of collisions 
-		//is counted.
-		for (int option=0; option<csp.getNumOptions(); option++) {
-			
-			//If both swapped cars contain the same option, no 
-			//variation is done.
-			if(requirements[firstClass][option]
-					== requirements[secondClass][option]) {
-				continue;
-			}
-			
-			int p = csp.getP(option);
-			int q = csp.getQ(option);
-			
-			int beginIndexFirst;
-			if(first-(q-1)<0) {
-				beginIndexFirst = 0;
-			} else {
-				beginIndexFirst = first-(q-1);
-			}
-			
-			int endIndexFirst = first;
+		int collisions = prevCollisions;
 
-			int prevCollisionsFirst=ArrayFunctions.addArraySegment(
-					excess[option], beginIndexFirst, endIndexFirst+1);
-			
-			int currentCollisionsFirst = countCollisions(csp, sequence, 
-					beginIndexFirst, endIndexFirst, option, excess, p, q);
+		//For each options, the variation in the number of collisions
+		//is counted. If both swapped cars contain the same option, no
+		//variation is done, so only the differing options are visited.
+		for (int option : csp.getDifferingOptions(
+				sequence[first], sequence[second])) {
+			int variation = swapOption(csp, bits, first, second, 
+					option, excess, occupancy, conflicts);
+			optionCollisions[option]+=variation;
+			collisions+=variation;
+		}
 
-			int beginIndexSecond;
-			if(second-(q-1)<0) {
-				beginIndexSecond = 0;
-			} else {
-				beginIndexSecond = second-(q-1);
-			}
-			
-			int endIndexSecond = second;
-			
-			if (beginIndexFirst<beginIndexSecond 
-					&& beginIndexSecond<first) {
-				beginIndexSecond = endIndexFirst+1;
-			} else if(beginIndexSecond<beginIndexFirst 
-					&& beginIndexFirst<second) {
-				endIndexSecond = beginIndexFirst-1;
-			}
+		return collisions;
+	}
 
-			int prevCollisionsSecond=ArrayFunctions.addArraySegment(
-					excess[option], beginIndexSecond, endIndexSecond+1);
+	private static int swapOption(CSPProblem csp, long[][] bits, int first, 
+			int second, int option, byte[] excess, byte[] occupancy,
+			ConflictIndex conflicts
+		) {
+		int p = csp.getP(option);
+		int q = csp.getQ(option);
+		int offset = option*csp.getCarsDemand();
 
-			int currentCollisionsSecond = countCollisions(csp, sequence, 
-					beginIndexSecond, endIndexSecond, option, excess, p, q);
-			
-			fitness-= (prevCollisionsFirst-currentCollisionsFirst);
-			
-			fitness-= (prevCollisionsSecond-currentCollisionsSecond);
+		//Windows covering the first index gain what the second lose.
+		int variation = CSPBitsetEvaluation.requires(bits[option], first)
+				- CSPBitsetEvaluation.requires(bits[option], second);
+
+		int beginIndexFirst;
+		if(first-(q-1)<0) {
+			beginIndexFirst = 0;
+		} else {
+			beginIndexFirst = first-(q-1);
 		}
-		
-		return fitness;
+
+		int endIndexFirst = first;
+
+		shiftOccupancy(occupancy, offset+beginIndexFirst,
+				offset+endIndexFirst, variation);
+
+		int beginIndexSecond;
+		if(second-(q-1)<0) {
+			beginIndexSecond = 0;
+		} else {
+			beginIndexSecond = second-(q-1);
+		}
+
+		int endIndexSecond = second;
+
+		shiftOccupancy(occupancy, offset+beginIndexSecond,
+				offset+endIndexSecond, -variation);
+
+		if (beginIndexFirst<beginIndexSecond
+				&& beginIndexSecond<first) {
+			beginIndexSecond = endIndexFirst+1;
+		} else if(beginIndexSecond<beginIndexFirst
+				&& beginIndexFirst<second) {
+			endIndexSecond = beginIndexFirst-1;
+		}
+
+		return refreshCollisions(bits[option], beginIndexFirst,
+				endIndexFirst, excess, occupancy, offset, p, conflicts)
+			+ refreshCollisions(bits[option], beginIndexSecond,
+				endIndexSecond, excess, occupancy, offset, p, conflicts);
 	}
-	
-	
-	
-	public static double evalInsert(CSPProblem csp, int[] sequence, int oldPos, 
-			int newPos, double prevFitness, int[][] collisions
+
+
+
+	public static int evalInsert(CSPProblem csp, long[][] bits, int oldPos,
+			int newPos, int prevCollisions, byte[] excess, byte[] occupancy,
+			int[] optionCollisions, ConflictIndex conflicts
 		) {
-		double fitness = prevFitness;
-		
-		//For each options, the variation in the number of collisions 
+		int collisions = prevCollisions;
+
+		int lowerPos = Math.min(oldPos, newPos);
+		int upperPos = Math.max(oldPos, newPos);
+
+		//For each options, the variation in the number of collisions
 		//is counted.
 		for (int option=0; option<csp.getNumOptions(); option++) {
-			
+
 			int p = csp.getP(option);
 			int q = csp.getQ(option);
-			
-			boolean canRotate = true;
-			
-			int beginIndexOld;
-			if(oldPos-(q-1)<0) {
-				beginIndexOld = 0;
-			} else {
-				beginIndexOld = oldPos-(q-1);
-			}
-			
-			int endIndexOld = oldPos;
+			int offset = option*csp.getCarsDemand();
 
-			int beginIndexNew;
-			if(newPos-(q-1)<0) {
-				beginIndexNew = 0;
+			//Every window covering a shifted car is affected.
+			int beginIndex;
+			if(lowerPos-(q-1)<0) {
+				beginIndex = 0;
 			} else {
-				beginIndexNew = newPos-(q-1);
-			}
-			
-			int endIndexNew = newPos;
-			
-			if (endIndexOld<endIndexNew 
-					&& beginIndexNew<oldPos) {
-				beginIndexNew = endIndexOld+1;
-				canRotate=false;
-			} else if(endIndexNew<endIndexOld 
-					&& beginIndexOld<newPos) {
-				endIndexNew = beginIndexOld-1;
-				canRotate=false;
-			} else if (endIndexNew==endIndexOld) {
-				canRotate=false;
-				if(beginIndexOld<beginIndexNew) {
-					endIndexOld=beginIndexNew-1;
-				} else {
-					endIndexNew = beginIndexOld-1;
-				}
+				beginIndex = lowerPos-(q-1);
 			}
 
-			int prevCollisionsOld,currentCollisionsOld;
-			int prevCollisionsNew,currentCollisionsNew;
-
-			prevCollisionsOld=ArrayFunctions.addArraySegment(
-					collisions[option], beginIndexOld, endIndexOld+1);
-
-			if (oldPos<newPos) {
-
-				if(canRotate) {
-					
-					rotateCollisions(collisions[option], endIndexOld, beginIndexNew, false);
-					//b+1 => e
-					prevCollisionsNew=ArrayFunctions.addArraySegment(
-							collisions[option], beginIndexNew+1, endIndexNew+1);
-				} else {
-					prevCollisionsNew=ArrayFunctions.addArraySegment(
-							collisions[option], beginIndexNew, endIndexNew+1);
-				}
-				
-			} else {
+			countOccupancy(bits[option], beginIndex, upperPos,
+					occupancy, offset, q);
 
-				if(canRotate) {
+			int variation = refreshCollisions(bits[option], beginIndex,
+					upperPos, excess, occupancy, offset, p, conflicts);
+			optionCollisions[option]+=variation;
+			collisions+=variation;
+		}
 
-					rotateCollisions(collisions[option], endIndexNew, beginIndexOld, true);
-					//nb => e-1
-					prevCollisionsNew=ArrayFunctions.addArraySegment(
-							collisions[option], beginIndexNew, endIndexNew);
-				}else {
-					prevCollisionsNew=ArrayFunctions.addArraySegment(
-							collisions[option], beginIndexNew, endIndexNew+1);
-				}
+		return collisions;
+	}
 
-			}
+	public static int evalInvert(CSPProblem csp, long[][] bits, int firstSequence,
+			int lastSequence, int prevCollisions, byte[] excess, byte[] occupancy,
+			int[] optionCollisions, ConflictIndex conflicts
+		) {
+		int collisions = prevCollisions;
 
-			currentCollisionsNew = countCollisions(csp, sequence, 
-					beginIndexNew, endIndexNew, option, collisions, p, q);
+		//For each options, the variation in the number of collisions
+		//is counted.
+		for (int option=0; option<csp.getNumOptions(); option++) {
 
-			if (oldPos<newPos) {
-				if(canRotate) {
-					currentCollisionsOld = countCollisions(csp, sequence, 
-							beginIndexOld, endIndexOld-1, option, collisions, p, q);
-				} else {
-					currentCollisionsOld = countCollisions(csp, sequence, 
-							beginIndexOld, endIndexOld, option, collisions, p, q);
-				}
+			int p = csp.getP(option);
+			int q = csp.getQ(option);
+			int offset = option*csp.getCarsDemand();
 
+			int beginSequence;
+			if(firstSequence-(q-1)<0) {
+				beginSequence = 0;
 			} else {
-				if(canRotate) {
-					currentCollisionsOld = countCollisions(csp, sequence, 
-							beginIndexOld+1, endIndexOld, option, collisions, p, q);
-				} else {
-					currentCollisionsOld = countCollisions(csp, sequence, 
-							beginIndexOld, endIndexOld, option, collisions, p, q);
-				}
-
+				beginSequence = firstSequence-(q-1);
 			}
 
-			fitness-= (prevCollisionsOld+prevCollisionsNew-currentCollisionsNew-currentCollisionsOld);
+			countOccupancy(bits[option], beginSequence, lastSequence,
+					occupancy, offset, q);
+
+			int variation = refreshCollisions(bits[option], beginSequence,
+					lastSequence, excess, occupancy, offset, p, conflicts);
+			optionCollisions[option]+=variation;
+			collisions+=variation;
 		}
-		
-		return fitness;
+		return collisions;
 	}
+
+	/*
+	 * Peek evaluation: the following functions return the variation in the
+	 * number of collisions a move would produce, reading the current 
+	 * excess and occupancy but without modifying any structure.
+	 */
+	
+	private static final int INSERT_MOVE = 0;
+	private static final int INVERT_MOVE = 1;
 	
-	public static double evalInvert(CSPProblem csp, int[] sequence, int firstSequence, 
-			int lastSequence, double prevFitness, int[][] collisions
+	/**
+	 * Position whose car would be placed at the given position after 
+	 * moving the segment between from and to (both inclusive).
+	 * @param car
+	 * @param move
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	private static int sourceOf(int car, int move, int from, int to) {
+		if(move==INVERT_MOVE) {
+			if(car<from || car>to) {
+				return car;
+			}
+			return from+to-car;
+		}
+		//Insertion from "from" to "to".
+		if(from<to) {
+			if(car<from || car>to) {
+				return car;
+			} else if(car==to) {
+				return from;
+			}
+			return car+1;
+		} else {
+			if(car<to || car>from) {
+				return car;
+			} else if(car==to) {
+				return from;
+			}
+			return car-1;
+		}
+	}
+	
+	/**
+	 * Variation in the collisions of the windows starting between both 
+	 * indexes (inclusive) if the given segment move was applied.
+	 * @return
+	 */
+	private static int peekWindows(long[] optionBits, byte[] excess, 
+			int offset, int beginIndex, int endIndex, int p, int q, int move, 
+			int from, int to
 		) {
-		double fitness = prevFitness;
+		int variation = 0;
 		
-		//For each options, the variation in the number of collisions 
-		//is counted.
-		for (int option=0; option<csp.getNumOptions(); option++) {
+		int occurrences = 0;
+		for (int car=beginIndex; car<beginIndex+q; car++) {
+			occurrences+=CSPBitsetEvaluation.requires(
+					optionBits, sourceOf(car, move, from, to));
+		}
+		
+		for (int car=beginIndex; car<=endIndex; car++) {
+			if(car>beginIndex) {
+				//The leaving car is replaced by the one entering the window.
+				occurrences+=CSPBitsetEvaluation.requires(
+						optionBits, sourceOf(car+q-1, move, from, to))
+					- CSPBitsetEvaluation.requires(
+						optionBits, sourceOf(car-1, move, from, to));
+			}
 			
-			int p = csp.getP(option);
-			int q = csp.getQ(option);
+			int collisions = CSPBitsetEvaluation.requires(
+					optionBits, sourceOf(car, move, from, to))
+						* Math.max(0, occurrences-p);
 			
-			int beginSequence;
-			if(firstSequence-(q-1)<0) {
-				beginSequence = 0;
-			} else {
-				beginSequence = firstSequence-(q-1);
+			variation+=collisions-excess[offset+car];
+		}
+		
+		return variation;
+	}
+	
+	/**
+	 * Fitness variation produced by swapping the given indexes.
+	 * 
+	 * Options are visited from the tightest one and the evaluation stops 
+	 * as soon as the variation cannot be lower than the given bound, even 
+	 * if the remaining options lost all their collisions. In that case, 
+	 * the returned value is not lower than the bound but it is not the 
+	 * exact variation.
+	 * @param csp
+	 * @param sequence
+	 * @param bits
+	 * @param first
+	 * @param second
+	 * @param excess
+	 * @param occupancy
+	 * @param optionCollisions
+	 * @param bound
+	 * @return
+	 */
+	public static int deltaSwap(CSPProblem csp, int[] sequence, long[][] bits,
+			int first, int second, byte[] excess, byte[] occupancy,
+			int[] optionCollisions, int bound
+		) {
+		if(second<first) {
+			int aux = first;
+			first = second;
+			second = aux;
+		}
+		
+		//Only the options differing between both cars are affected, 
+		//visited tightest first.
+		final int[] differing = csp.getDifferingOptions(
+				sequence[first], sequence[second]);
+		
+		int remaining = 0;
+		for (int option : differing) {
+			remaining+=optionCollisions[option];
+		}
+		
+		int delta = 0;
+		
+		for (int option : differing) {
+			delta+=peekSwapOption(csp, bits[option], first, second, 
+					option, excess, occupancy);
+			
+			remaining-=optionCollisions[option];
+			if(delta-remaining>=bound) {
+				return delta-remaining;
+			}
+		}
+		
+		return delta;
+	}
+	
+	/**
+	 * First index should be lower than the second one.
+	 */
+	private static int peekSwapOption(CSPProblem csp, long[] optionBits, 
+			int first, int second, int option, byte[] excess, 
+			byte[] occupancy
+		) {
+		int p = csp.getP(option);
+		int q = csp.getQ(option);
+		int offset = option*csp.getCarsDemand();
+		
+		//Requirements of the cars once swapped.
+		int firstRequires = CSPBitsetEvaluation.requires(optionBits, second);
+		int secondRequires = CSPBitsetEvaluation.requires(optionBits, first);
+		int variation = firstRequires-secondRequires;
+		
+		int beginIndexFirst = Math.max(0, first-(q-1));
+		int beginIndexSecond = Math.max(0, second-(q-1));
+		
+		int delta = 0;
+		
+		int car = beginIndexFirst;
+		while(car<=second) {
+			if(car>first && car<beginIndexSecond) {
+				//Skip windows covering none of the swapped cars.
+				car = beginIndexSecond;
 			}
 			
-			int prevCollisions = ArrayFunctions.addArraySegment(
-					collisions[option], beginSequence, lastSequence+1);
+			int occurrences = occupancy[offset+car];
+			if(car<=first) {
+				occurrences+=variation;
+			}
+			if(car>=beginIndexSecond) {
+				occurrences-=variation;
+			}
 			
-			int currentCollisions = countCollisions(csp, sequence, 
-					beginSequence, lastSequence, option, collisions, p, q);
+			int requires;
+			if(car==first) {
+				requires = firstRequires;
+			} else if(car==second) {
+				requires = secondRequires;
+			} else {
+				requires = CSPBitsetEvaluation.requires(optionBits, car);
+			}
 			
-			fitness -= (prevCollisions-currentCollisions);
+			delta+=requires*Math.max(0, occurrences-p)-excess[offset+car];
+			car++;
 		}
-		return fitness;
+		
+		return delta;
 	}
 	
 	/**
-	 * Both from and to are inclusive!!
-	 * @param collisions
-	 * @param from
-	 * @param to
-	 * @param right
+	 * Fitness variation produced by inserting the car at oldPos into 
+	 * newPos. See deltaSwap for the meaning of the bound.
+	 * @param csp
+	 * @param bits
+	 * @param oldPos
+	 * @param newPos
+	 * @param excess
+	 * @param optionCollisions
+	 * @param prevCollisions
+	 * @param bound
+	 * @return
 	 */
-	private static void rotateCollisions(int[] collisions, int from, int to, boolean right) {
-		if(right) {
-			for (int i=to; i>from; i--) {
-				collisions[i]=collisions[i-1];
-			}
-		} else {
-			for (int i=from; i<to; i++) {
-				collisions[i]=collisions[i+1];
+	public static int deltaInsert(CSPProblem csp, long[][] bits, int oldPos,
+			int newPos, byte[] excess, int[] optionCollisions, 
+			int prevCollisions, int bound
+		) {
+		return peekSegment(csp, bits, Math.min(oldPos, newPos), 
+				Math.max(oldPos, newPos), excess, optionCollisions, 
+					prevCollisions, bound, INSERT_MOVE, oldPos, newPos);
+	}
+	
+	/**
+	 * Fitness variation produced by inverting the sequence between both 
+	 * indexes (inclusive). See deltaSwap for the meaning of the bound.
+	 * @param csp
+	 * @param bits
+	 * @param firstSequence
+	 * @param lastSequence
+	 * @param excess
+	 * @param optionCollisions
+	 * @param prevCollisions
+	 * @param bound
+	 * @return
+	 */
+	public static int deltaInvert(CSPProblem csp, long[][] bits, 
+			int firstSequence, int lastSequence, byte[] excess, 
+			int[] optionCollisions, int prevCollisions, int bound
+		) {
+		return peekSegment(csp, bits, firstSequence, lastSequence, excess, 
+				optionCollisions, prevCollisions, bound, INVERT_MOVE, 
+					firstSequence, lastSequence);
+	}
+	
+	/**
+	 * Variation of a move reordering the cars between both positions.
+	 */
+	private static int peekSegment(CSPProblem csp, long[][] bits, 
+			int lowerPos, int upperPos, byte[] excess, 
+			int[] optionCollisions, int prevCollisions, int bound, 
+			int move, int from, int to
+		) {
+		int remaining = prevCollisions;
+		int delta = 0;
+		
+		for (int option : csp.getOptionsByTightness()) {
+			int p = csp.getP(option);
+			int q = csp.getQ(option);
+			
+			delta+=peekWindows(bits[option], excess, 
+					option*csp.getCarsDemand(), Math.max(0, lowerPos-(q-1)), 
+						upperPos, p, q, move, from, to);
+			
+			remaining-=optionCollisions[option];
+			if(delta-remaining>=bound) {
+				return delta-remaining;
 			}
 		}
+		
+		return delta;
 	}
 }
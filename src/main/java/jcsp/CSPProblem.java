@@ -2,21 +2,20 @@ package jcsp;
 
 import java.util.Arrays;
 
-import org.apache.commons.collections.BinaryHeap;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.jamesframework.core.problems.Problem;
 import org.jamesframework.core.problems.constraints.validations.SimpleValidation;
 import org.jamesframework.core.problems.constraints.validations.Validation;
 import org.jamesframework.core.problems.objectives.evaluations.Evaluation;
 import org.jamesframework.core.problems.objectives.evaluations.SimpleEvaluation;
+import org.jamesframework.core.search.neigh.Move;
 
-import gnu.trove.list.array.TIntArrayList;
-import jcsp.util.HeapBean;
+import jcsp.move.CSPMove;
+import jcsp.move.PermutationMove;
 import jcsp.util.functions.ArrayFunctions;
 import jcsp.util.random.Randomizer;
 
-@SuppressWarnings("deprecation")
-public class CSPProblem implements Problem<CSPSolution>{
+public class CSPProblem implements Problem<CSPSolution>, Cloneable{
 
 	public final static int EMPTY_CAR = -1;
 	
@@ -43,6 +42,37 @@ public class CSPProblem implements Problem<CSPSolution>{
 	protected double [] ratioPossibleTotal;
 	protected int [] carsRequiring;
 	
+	/**
+	 * For each class, bit o is set when the class requires option o.
+	 * 	[numClasses] [numOptions/64+1].
+	 */
+	protected long [][] optionMasks;
+	
+	/**
+	 * Options sorted by decreasing q/p ratio, so the tightest come first.
+	 */
+	protected int [] optionsByTightness;
+	
+	/**
+	 * For each class, the options it requires in increasing order.
+	 * 	[numClasses] [requiredOptions].
+	 */
+	protected int [][] requiredOptions;
+	
+	/**
+	 * For each pair of classes, the options required by only one of them, 
+	 * tightest first. Both orders of a pair share the same array.
+	 * 	[numClasses] [numClasses] [differingOptions].
+	 */
+	protected int [][][] differingOptions;
+	
+	/**
+	 * When classes sharing the same options are merged into profiles, 
+	 * for each profile, the original classes and their demand.
+	 */
+	protected int [][] profileClasses = null;
+	protected int [][] profileDemands = null;
+	
 	//Randomizer
 	public Randomizer random;
 	
@@ -61,7 +91,15 @@ public class CSPProblem implements Problem<CSPSolution>{
 		this.requirements = requirements;
 		this.demandByClasses = demandByClasses;
 		
+		for (int i=0; i<numOptions; i++) {
+			if(options[TOTAL_INDEX][i]>Byte.MAX_VALUE) {
+				throw new IllegalArgumentException(
+						"Window sizes over "+Byte.MAX_VALUE+" are not supported.");
+			}
+		}
+		
 		carsRequiring = new int [numOptions];
+		optionMasks = new long [numClasses][(numOptions/Long.SIZE)+1];
 		
 		//Create datastructs
 		ratioPossibleTotal = new double[numOptions];
@@ -72,9 +110,174 @@ public class CSPProblem implements Problem<CSPSolution>{
 			for (int j=0; j<numClasses; j++) {
 				if(requirements[j][i]>0) {
 					carsRequiring[i]+=demandByClasses[j];
+					optionMasks[j][i/Long.SIZE] |= 1L << i;
+				}
+			}
+		}
+		
+		optionsByTightness = new int[numOptions];
+		for (int i=0; i<numOptions; i++) {
+			int o = i;
+			//Insertion sort, instances have few options.
+			while(o>0 && ratioPossibleTotal[optionsByTightness[o-1]]
+					<ratioPossibleTotal[i]) {
+				optionsByTightness[o] = optionsByTightness[o-1];
+				o--;
+			}
+			optionsByTightness[o] = i;
+		}
+		
+		requiredOptions = new int [numClasses][];
+		for (int c=0; c<numClasses; c++) {
+			requiredOptions[c] = filterOptions(c, c, false);
+		}
+		
+		differingOptions = new int [numClasses][numClasses][];
+		for (int c=0; c<numClasses; c++) {
+			for (int other=0; other<=c; other++) {
+				differingOptions[c][other] = filterOptions(c, other, true);
+				differingOptions[other][c] = differingOptions[c][other];
+			}
+		}
+	}
+	
+	/**
+	 * Options required by the first class or, when differing, the options 
+	 * required by only one of both classes. Differing options are sorted 
+	 * by tightness.
+	 * @param carClass
+	 * @param other
+	 * @param differing
+	 * @return
+	 */
+	private int[] filterOptions(int carClass, int other, boolean differing) {
+		int[] filtered = new int [numOptions];
+		int size = 0;
+		
+		for (int i=0; i<numOptions; i++) {
+			int o = differing ? optionsByTightness[i] : i;
+			boolean required = requirements[carClass][o]>0;
+			if(differing) {
+				required ^= requirements[other][o]>0;
+			}
+			if(required) {
+				filtered[size] = o;
+				size++;
+			}
+		}
+		
+		return Arrays.copyOf(filtered, size);
+	}
+	
+	/**
+	 * Copy sharing every problem structure but drawing from the given 
+	 * random stream, so searches on different threads do not share it.
+	 * @param random
+	 * @return
+	 */
+	public CSPProblem withRandom(Randomizer random) {
+		try {
+			CSPProblem copy = (CSPProblem) super.clone();
+			copy.random = random;
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Creates a problem where classes requiring exactly the same options 
+	 * are merged into a single class (option profile) with their added 
+	 * demand. Sequences of the reduced problem are mapped back to the 
+	 * original classes using restoreClasses. If no classes are merged, 
+	 * this problem is returned.
+	 * @return
+	 */
+	public CSPProblem reduceProfiles() {
+		int[] profileOf = new int [numClasses];
+		int numProfiles = 0;
+		
+		for (int c=0; c<numClasses; c++) {
+			profileOf[c] = numProfiles;
+			for (int other=0; other<c; other++) {
+				if(Arrays.equals(requirements[c], requirements[other])) {
+					profileOf[c] = profileOf[other];
+					break;
 				}
 			}
+			if(profileOf[c]==numProfiles) {
+				numProfiles++;
+			}
+		}
+		
+		if(numProfiles==numClasses) {
+			return this;
+		}
+		
+		int[][] profileRequirements = new int [numProfiles][];
+		int[] profileDemand = new int [numProfiles];
+		int[] profileSize = new int [numProfiles];
+		
+		for (int c=0; c<numClasses; c++) {
+			int profile = profileOf[c];
+			profileRequirements[profile] = requirements[c];
+			profileDemand[profile]+=demandByClasses[c];
+			profileSize[profile]++;
+		}
+		
+		CSPProblem reduced = new CSPProblem(carsDemand, numOptions, 
+				numProfiles, options, profileRequirements, profileDemand);
+		reduced.random = random;
+		reduced.profileClasses = new int [numProfiles][];
+		reduced.profileDemands = new int [numProfiles][];
+		
+		for (int profile=0; profile<numProfiles; profile++) {
+			reduced.profileClasses[profile] = new int [profileSize[profile]];
+			reduced.profileDemands[profile] = new int [profileSize[profile]];
+			profileSize[profile] = 0;
+		}
+		
+		for (int c=0; c<numClasses; c++) {
+			int profile = profileOf[c];
+			reduced.profileClasses[profile][profileSize[profile]] = c;
+			reduced.profileDemands[profile][profileSize[profile]] = 
+					demandByClasses[c];
+			profileSize[profile]++;
+		}
+		
+		return reduced;
+	}
+	
+	/**
+	 * Maps a sequence of option profiles back to the original classes. 
+	 * Classes of the same profile are interchangeable, so each profile 
+	 * position takes the first of its classes with remaining demand.
+	 * @param sequence
+	 * @return
+	 */
+	public int[] restoreClasses(int[] sequence) {
+		if(profileClasses==null) {
+			return sequence;
+		}
+		
+		int[] restored = new int [sequence.length];
+		int[] current = new int [profileClasses.length];
+		int[][] remaining = new int [profileClasses.length][];
+		for (int profile=0; profile<profileClasses.length; profile++) {
+			remaining[profile] = Arrays.copyOf(profileDemands[profile], 
+					profileDemands[profile].length);
+		}
+		
+		for (int car=0; car<sequence.length; car++) {
+			int profile = sequence[car];
+			while(remaining[profile][current[profile]]==0) {
+				current[profile]++;
+			}
+			restored[car] = profileClasses[profile][current[profile]];
+			remaining[profile][current[profile]]--;
 		}
+		
+		return restored;
 	}
 	
 	public CSPSolution createRandomSolution() {
@@ -110,86 +313,135 @@ public class CSPProblem implements Problem<CSPSolution>{
 	}
 	
 	public int[][] createExcessMatrix(int[] sequence) {
+		return createExcessMatrix(sequence, createOccupancyMatrix(sequence));
+	}
+	
+	/**
+	 * Derives the excess matrix from an already computed occupancy 
+	 * matrix: a window only counts when its first car requires the option.
+	 * @param sequence
+	 * @param occupancy
+	 * @return
+	 */
+	public int[][] createExcessMatrix(int[] sequence, int[][] occupancy) {
 		int[][] excesses = new int [numOptions][carsDemand];
 		
 		for (int car=0; car<carsDemand; car++) {
 			for (int option=0; option<numOptions; option++) {
 				
-				int total = this.options[TOTAL_INDEX][option];
 				int possible = this.options[POSSIBLE_INDEX][option];
-				
 
 				if(requirements[sequence[car]][option] == 0) {
 					continue;
 				}
 				
-				excesses[option][car]= calculateColissions(
-						car, option, sequence, total, possible);
-
+				if(occupancy[option][car]>possible) {
+					excesses[option][car] = occupancy[option][car]-possible;
+				}
 			}
 		}
 		
 		return excesses;
 	}
 	
-	public double evaluateRestrictions(int[] sequence, int lastIndex) {
-		double fitness =0;
+	/**
+	 * For each option, number of cars requiring it in the window of 
+	 * size q starting at each position. Each option is computed in a single 
+	 * pass, sliding the window one car at a time.
+	 * @param sequence
+	 * @return
+	 */
+	public int[][] createOccupancyMatrix(int[] sequence) {
+		int[][] occupancy = new int [numOptions][carsDemand];
 		
-		for (int car=0; car<lastIndex; car++) {
-			for (int option=0; option<numOptions; option++) {
-				
-				int total = this.options[TOTAL_INDEX][option];
-				int possible = this.options[POSSIBLE_INDEX][option];
-
-				if(requirements[sequence[car]][option] == 0) {
-					continue;
-				}
-				
-				fitness+= calculateColissions(car, option, sequence, 
-						total, possible);
-
+		for (int option=0; option<numOptions; option++) {
+			
+			int total = this.options[TOTAL_INDEX][option];
+			int occurrences = countWindow(sequence, option, total);
+			
+			for (int car=0; car<carsDemand; car++) {
+				occupancy[option][car] = occurrences;
+				occurrences = slideWindow(sequence, option, total, car, 
+						occurrences);
 			}
 		}
 		
-		return fitness;
+		return occupancy;
+	}
+	
+	/**
+	 * The deterministic objective is an integer number of collisions, 
+	 * see evaluateRestrictionsPartialSequence.
+	 * @param sequence
+	 * @param lastIndex
+	 * @return
+	 */
+	public double evaluateRestrictions(int[] sequence, int lastIndex) {
+		return evaluateRestrictionsPartialSequence(sequence, lastIndex);
 	}
 	
+	/**
+	 * Collisions of the windows starting before lastIndex (exclusive). 
+	 * Windows are computed with a running sum, so each option takes a 
+	 * single pass over the sequence.
+	 * @param sequence
+	 * @param lastIndex
+	 * @return
+	 */
 	public int evaluateRestrictionsPartialSequence(int[] sequence, int lastIndex) {
 		int fitness = 0;
 		
-		for (int car=0; car<lastIndex; car++) {
-			for (int option=0; option<numOptions; option++) {
-				
-				int total = this.options[TOTAL_INDEX][option];
-				int possible = this.options[POSSIBLE_INDEX][option];
-				
-				if(requirements[sequence[car]][option] == 0) {
-					continue;
+		for (int option=0; option<numOptions; option++) {
+			
+			int total = this.options[TOTAL_INDEX][option];
+			int possible = this.options[POSSIBLE_INDEX][option];
+			int occurrences = countWindow(sequence, option, total);
+			
+			for (int car=0; car<lastIndex; car++) {
+				//P+
+				if(requirements[sequence[car]][option] != 0 
+						&& occurrences>possible) {
+					fitness+=occurrences-possible;
 				}
-				
-				fitness+= calculateColissions(car, option, sequence, 
-						total, possible);
-				
+				occurrences = slideWindow(sequence, option, total, car, 
+						occurrences);
 			}
 		}
 		
 		return fitness;
 	}
 	
-	private int calculateColissions(int car, int option, 
-			int[] sequence, int total, int possible){
-		int nextCar = 1;
-		int occurrences = 1;
+	/**
+	 * Cars requiring the option in the first window of the sequence. Empty 
+	 * positions do not count.
+	 */
+	private int countWindow(int[] sequence, int option, int total) {
+		int occurrences = 0;
+		
+		for (int car=0; car<total && car<carsDemand; car++) {
+			if(sequence[car]!=EMPTY_CAR) {
+				occurrences+=requirements[sequence[car]][option];
+			}
+		}
+		
+		return occurrences;
+	}
+	
+	/**
+	 * Moves the window starting at the given car one position forward.
+	 */
+	private int slideWindow(int[] sequence, int option, int total, int car, 
+			int occurrences) {
+		if(sequence[car]!=EMPTY_CAR) {
+			occurrences-=requirements[sequence[car]][option];
+		}
 		
-		while(nextCar<total && car+nextCar < carsDemand) {
-			occurrences+=requirements[sequence[car+nextCar]][option];
-			nextCar++;
+		int entering = car+total;
+		if(entering<carsDemand && sequence[entering]!=EMPTY_CAR) {
+			occurrences+=requirements[sequence[entering]][option];
 		}
 		
-		//P+
-		if (occurrences>possible) {
-			return occurrences-possible;
-		} else return 0;
+		return occurrences;
 	}
 	
 	private double dynamicUtilizationRate(int option, int dynamicRequiring, int dynamicDemand) {
@@ -207,11 +459,9 @@ public class CSPProblem implements Problem<CSPSolution>{
 			int dynamicDemand, int targetClass) {
 		double durSumByClass = 0;
 
-		for (int o =0; o<numOptions; o++) {
-				if(requirements[targetClass][o]>0) {
-					durSumByClass += dynamicUtilizationRate(
-							o, carsRequiring[o], dynamicDemand);
-				}
+		for (int o : requiredOptions[targetClass]) {
+			durSumByClass += dynamicUtilizationRate(
+					o, carsRequiring[o], dynamicDemand);
 		}
 		return durSumByClass;
 	}
@@ -219,26 +469,31 @@ public class CSPProblem implements Problem<CSPSolution>{
 	public CSPSolution createHeuristic(double alpha) {
 		CSPSolution initial = createEmptySolution();
 		
+		//Buffers are reused for every position.
+		int[] fitness = new int [numClasses];
+		int[] lowest = new int [numClasses];
+		double[] heuristicValues = new double [numClasses];
+		
 		int pos = 0;
 		
 		while(pos<carsDemand) {
-			int[] fitness = initial.checkPosition(pos);
+			initial.checkPosition(pos, fitness);
 			
 			int minimum = NumberUtils.min(fitness);
 			
-			TIntArrayList lowest = new TIntArrayList();
+			int numLowest = 0;
 			for (int carClass = 0; carClass<numClasses; carClass++) {
 				int colissions = fitness[carClass];
 				if(colissions == minimum) {
-					lowest.add(carClass);
+					lowest[numLowest] = carClass;
+					numLowest++;
 				}
 			}
 			
-			int[] filteredClasses = lowest.toArray();
-			
-			double[] heuristicValues = 
-					initial.checkHeuristicValues(filteredClasses, pos);
-			int next = getBestRandomized(filteredClasses, heuristicValues, alpha);
+			initial.checkHeuristicValues(lowest, numLowest, pos, 
+					heuristicValues);
+			int next = getBestRandomized(lowest, heuristicValues, numLowest, 
+					alpha);
 			initial.addCar(next);
 			
 			pos++;
@@ -247,26 +502,20 @@ public class CSPProblem implements Problem<CSPSolution>{
 		return initial;
 	}
 	
+	/**
+	 * Picks randomly one of the (numValues * alpha)+1 classes with greater 
+	 * heuristic value. Both arrays are reordered.
+	 */
 	private int getBestRandomized(int[] filteredClasses, 
-			double[] heuristicValues, double alpha
+			double[] heuristicValues, int numValues, double alpha
 		) {
 		
-		int numValues = filteredClasses.length;
-		
-		int numCandidates = (int)(numValues * alpha)+1;
-		
-		BinaryHeap maxHeap = new BinaryHeap(false, HeapBean.beanComparator());
-		for (int c = 0; c<numValues; c++) {
-			maxHeap.add(new HeapBean(heuristicValues[c], filteredClasses[c]));
-		}
+		int numCandidates = Math.min(numValues, (int)(numValues * alpha)+1);
 		
-		HeapBean[] candidates = new HeapBean[numCandidates];
-		for (int i = 0; i<numCandidates; i++) {
-			candidates[i] = (HeapBean)maxHeap.pop();
-		}
-		int selectedClass = candidates[random.nextInt(numCandidates)].carClass;
+		ArrayFunctions.selectGreatest(heuristicValues, filteredClasses, 
+				numValues, numCandidates);
 		
-		return selectedClass;
+		return filteredClasses[random.nextInt(numCandidates)];
 	}
 	
 	public Evaluation evaluate(CSPSolution sol) {
@@ -282,6 +531,56 @@ public class CSPProblem implements Problem<CSPSolution>{
 		}
 	}
 
+	/**
+	 * Moves able to compute their own fitness variation are evaluated 
+	 * without being applied to the solution.
+	 */
+	@Override
+	public Evaluation evaluate(Move<? super CSPSolution> move, 
+			CSPSolution curSolution, Evaluation curEvaluation) {
+		
+		if(move instanceof CSPMove && canPeek(curSolution)) {
+			return new SimpleEvaluation(curSolution.getCollisions() 
+					+ ((CSPMove)move).getDelta(curSolution));
+		}
+		
+		move.apply(curSolution);
+		Evaluation evaluation = evaluate(curSolution);
+		move.undo(curSolution);
+		
+		return evaluation;
+	}
+	
+	/**
+	 * Whether moves can be evaluated from the collision structures of the 
+	 * solution without being applied.
+	 * @param sol
+	 * @return
+	 */
+	public boolean canPeek(CSPSolution sol) {
+		return sol.getLastIndex()==carsDemand-1;
+	}
+	
+	/**
+	 * Permutation moves keep the demand of each class, so a complete 
+	 * sequence keeps its current validation.
+	 */
+	@Override
+	public Validation validate(Move<? super CSPSolution> move, 
+			CSPSolution curSolution, Validation curValidation) {
+		
+		if(move instanceof PermutationMove 
+				&& curSolution.getLastIndex()==carsDemand-1) {
+			return curValidation;
+		}
+		
+		move.apply(curSolution);
+		Validation validation = validate(curSolution);
+		move.undo(curSolution);
+		
+		return validation;
+	}
+
 	/**
 	 * CSP Problem is modeled as a minimization problem.
 	 */
@@ -357,4 +656,20 @@ public class CSPProblem implements Problem<CSPSolution>{
 	public int[][] getRequirements() {
 		return requirements;
 	}
+	
+	public long[][] getOptionMasks() {
+		return optionMasks;
+	}
+	
+	public int[] getOptionsByTightness() {
+		return optionsByTightness;
+	}
+	
+	public int[] getRequiredOptions(int carClass) {
+		return requiredOptions[carClass];
+	}
+	
+	public int[] getDifferingOptions(int carClass, int other) {
+		return differingOptions[carClass][other];
+	}
 }
@@ -23,13 +23,50 @@ public class CSPSolution extends Solution{
 	private int lastType = -1;
 
 	//Evaluation
-	protected double fitness = Double.MAX_VALUE;
+	protected int collisions = Integer.MAX_VALUE;
 	
 	private int[] colissionsByOption;
+	
+	/**
+	 * Sum of colissionsByOption, collisions of the partial sequence.
+	 */
+	private int partialCollisions = 0;
 	private int[][] tempColissionsByClassAndOption;
 	
-	private int [][] exceedByQ;
-	private int [][] debugExceedByQ;
+	/**
+	 * For each option, cars requiring it among the last q-1 cars added, 
+	 * that is, the backward window of the next position.
+	 */
+	private int[] windowByOption;
+	
+	/**
+	 * Collisions of the window starting at each position, option-major.
+	 * Excess never exceeds q, so bytes are enough.
+	 * 	[numOptions * carsDemand].
+	 */
+	private byte [] exceedByQ;
+	
+	/**
+	 * Cars requiring each option in the window starting at each position.
+	 * 	[numOptions * carsDemand].
+	 */
+	private byte [] occupancy;
+	
+	/**
+	 * Collisions of each option.
+	 */
+	private int [] optionCollisions;
+	
+	/**
+	 * Positions starting a colliding window.
+	 */
+	private ConflictIndex conflicts;
+	
+	/**
+	 * Option bitsets of the sequence (see CSPBitsetEvaluation).
+	 * 	[numOptions] [numWords].
+	 */
+	private long [][] optionBits;
 	
 	private CSPSolution(
 			int[] sequence,
@@ -53,7 +90,13 @@ public class CSPSolution extends Solution{
 		int numOptions = csp.getNumOptions();
 		colissionsByOption = new int[numOptions];
 		tempColissionsByClassAndOption = new int[numClasses][numOptions];
-		debugExceedByQ = new int[numOptions][csp.getCarsDemand()];
+		windowByOption = new int[numOptions];
+		
+		//Search structures are filled as cars are added.
+		int carsDemand = csp.getCarsDemand();
+		exceedByQ = new byte[numOptions*carsDemand];
+		occupancy = new byte[numOptions*carsDemand];
+		optionBits = new long[numOptions][CSPBitsetEvaluation.getNumWords(csp)];
 	}
 	
 	public static CSPSolution createEmpty(
@@ -64,8 +107,47 @@ public class CSPSolution extends Solution{
 		return new CSPSolution(sequence, availableClasses, csp);
 	}
 
+	/**
+	 * Complete solution ready for the search. The given excess is kept, 
+	 * the remaining structures are built from the sequence. When it is 
+	 * null, the sequence is fully evaluated.
+	 * @param excess
+	 * @param csp
+	 * @param sequence
+	 */
 	public CSPSolution(
-			int[][] excess,
+			byte[] excess,
+			CSPProblem csp,
+			int[] sequence
+		) {
+		this(checkExcess(excess, csp), null, null, null, null, csp, sequence);
+		
+		if(excess!=null) {
+			optionBits = CSPBitsetEvaluation.createOptionBitsets(csp, sequence);
+			occupancy = CSPBitsetEvaluation.createOccupancy(csp, optionBits);
+		}
+	}
+	
+	private static byte[] checkExcess(byte[] excess, CSPProblem csp) {
+		if(excess!=null 
+				&& excess.length!=csp.getNumOptions()*csp.getCarsDemand()) {
+			throw new IllegalArgumentException(
+					"Excess size "+excess.length+" does not match the problem.");
+		}
+		return excess;
+	}
+	
+	/**
+	 * Missing occupancy and bitsets are not built, so moves and deltas 
+	 * are only available when they are provided. Subclasses without 
+	 * incremental evaluation, as robust solutions, rely on this.
+	 */
+	protected CSPSolution(
+			byte[] excess,
+			byte[] occupancy,
+			int[] optionCollisions,
+			ConflictIndex conflicts,
+			long[][] optionBits,
 			CSPProblem csp,
 			int[] sequence
 		) {
@@ -79,15 +161,36 @@ public class CSPSolution extends Solution{
 			fullEvaluation();
 		} else {
 			exceedByQ = excess;
-			fitness = MatrixFunctions.addMatrix(exceedByQ);
+			this.occupancy = occupancy;
+			this.optionBits = optionBits;
+			
+			if(optionCollisions==null) {
+				sumCollisions();
+			} else {
+				this.optionCollisions = optionCollisions;
+				this.conflicts = conflicts;
+				collisions = ArrayFunctions.addArray(optionCollisions);
+			}
 		}
 	}
 	
 	@Override
 	public Solution copy() {
+		return copy(csp);
+	}
+	
+	/**
+	 * Copy of a complete solution bound to the given problem, which must 
+	 * share the structures of the current one.
+	 * @param csp
+	 * @return
+	 */
+	public CSPSolution copy(CSPProblem csp) {
 		return new CSPSolution(
-				MatrixFunctions.copyMatrix(exceedByQ), 
-					csp, Arrays.copyOf(sequence, sequence.length));
+				exceedByQ.clone(), occupancy.clone(), 
+					optionCollisions.clone(), new ConflictIndex(conflicts),
+						MatrixFunctions.copyMatrix(optionBits),
+						csp, Arrays.copyOf(sequence, sequence.length));
 	}
 
 	@Override
@@ -113,8 +216,23 @@ public class CSPSolution extends Solution{
 	
 	public void fullEvaluation() {
 
-		exceedByQ = csp.createExcessMatrix(sequence);
-		fitness = MatrixFunctions.addMatrix(exceedByQ);
+		optionBits = CSPBitsetEvaluation.createOptionBitsets(csp, sequence);
+		occupancy = CSPBitsetEvaluation.createOccupancy(csp, optionBits);
+		exceedByQ = CSPBitsetEvaluation.createExcess(
+				csp, optionBits, occupancy);
+		sumCollisions();
+	}
+	
+	private void sumCollisions() {
+		final int carsDemand = csp.getCarsDemand();
+		
+		optionCollisions = new int[csp.getNumOptions()];
+		conflicts = new ConflictIndex(carsDemand);
+		for (int i=0; i<exceedByQ.length; i++) {
+			optionCollisions[i/carsDemand]+=exceedByQ[i];
+			conflicts.update(i%carsDemand, 0, exceedByQ[i]);
+		}
+		collisions = ArrayFunctions.addArray(optionCollisions);
 	}
 	
 	// MOVE FUNCTIONALITY
@@ -124,8 +242,11 @@ public class CSPSolution extends Solution{
 		sequence[i]=sequence[j];
 		sequence[j]=tmp;
 		
-		fitness = CSPEvaluation.evalSwap(csp, sequence, 
-				i, j, fitness, exceedByQ
+		CSPBitsetEvaluation.writeCars(csp, sequence, optionBits, i, i);
+		CSPBitsetEvaluation.writeCars(csp, sequence, optionBits, j, j);
+		
+		collisions = CSPEvaluation.evalSwap(csp, sequence, optionBits,
+				i, j, collisions, exceedByQ, occupancy, optionCollisions, conflicts
 					);
 	}
 	
@@ -146,8 +267,11 @@ public class CSPSolution extends Solution{
 		}
 		sequence[newPos] = type;
 		
-		fitness = CSPEvaluation.evalInsert(csp, sequence, 
-				oldPos, newPos, fitness, exceedByQ
+		CSPBitsetEvaluation.writeCars(csp, sequence, optionBits, 
+				Math.min(oldPos, newPos), Math.max(oldPos, newPos));
+		
+		collisions = CSPEvaluation.evalInsert(csp, optionBits, 
+				oldPos, newPos, collisions, exceedByQ, occupancy, optionCollisions, conflicts
 					);
 	}
 	
@@ -179,11 +303,50 @@ public class CSPSolution extends Solution{
 		//reverse uses the last position as a not inclusive one.
 		ArrayUtils.reverse(sequence,begin,end+1);
 		
-		fitness = CSPEvaluation.evalInvert(csp, sequence, 
-				begin, end, fitness, exceedByQ
+		CSPBitsetEvaluation.writeCars(csp, sequence, optionBits, begin, end);
+		
+		collisions = CSPEvaluation.evalInvert(csp, optionBits, 
+				begin, end, collisions, exceedByQ, occupancy, optionCollisions, conflicts
 					);
 	}
 	
+	// PEEK FUNCTIONALITY: fitness variation without applying the move.
+	// Evaluation stops once the variation cannot be lower than the bound 
+	// (see CSPEvaluation.deltaSwap).
+	
+	public int deltaSwap(int i, int j) {
+		return deltaSwap(i, j, Integer.MAX_VALUE);
+	}
+	
+	public int deltaSwap(int i, int j, int bound) {
+		return CSPEvaluation.deltaSwap(csp, sequence, optionBits, 
+				i, j, exceedByQ, occupancy, optionCollisions, bound);
+	}
+	
+	public int deltaInsert(int oldPos, int newPos) {
+		return deltaInsert(oldPos, newPos, Integer.MAX_VALUE);
+	}
+	
+	public int deltaInsert(int oldPos, int newPos, int bound) {
+		return CSPEvaluation.deltaInsert(csp, optionBits, 
+				oldPos, newPos, exceedByQ, optionCollisions, collisions, bound);
+	}
+	
+	/**
+	 * End is inclusive.
+	 * @param begin
+	 * @param end
+	 * @return
+	 */
+	public int deltaInvert(int begin, int end) {
+		return deltaInvert(begin, end, Integer.MAX_VALUE);
+	}
+	
+	public int deltaInvert(int begin, int end, int bound) {
+		return CSPEvaluation.deltaInvert(csp, optionBits, 
+				begin, end, exceedByQ, optionCollisions, collisions, bound);
+	}
+	
 	public void addCar(int typeClass) {
 		if(lastIndex==sequence.length-1)
 			throw new IllegalStateException(
@@ -203,36 +366,93 @@ public class CSPSolution extends Solution{
 		lastType=typeClass;
 
 		
-		fitness = 0;
+		collisions = 0;
 		
 		int[][] requirements = csp.getRequirements();
 		for (int r=0; r<csp.getNumOptions(); r++) {
 			if(requirements[typeClass][r]>0) {
 				requiringByOption[r]--;
 			}
+			//Slide the backward window of the next position.
+			windowByOption[r]+=requirements[typeClass][r];
+			int leaving = lastIndex-(csp.getQ(r)-1);
+			if(leaving>=0) {
+				//The forward window of the leaving car is now complete.
+				fillWindow(r, leaving, windowByOption[r]);
+				windowByOption[r]-=requirements[sequence[leaving]][r];
+			}
 			//Update Options
 			colissionsByOption[r] = tempColissionsByClassAndOption[typeClass][r];
 			//Update fitness
-			fitness+=colissionsByOption[r];
-			debugExceedByQ[r][lastIndex]=colissionsByOption[r];
+			collisions+=colissionsByOption[r];
+		}
+		partialCollisions = collisions;
+		
+		CSPBitsetEvaluation.writeCars(csp, sequence, optionBits, 
+				lastIndex, lastIndex);
+		
+		if(lastIndex==sequence.length-1) {
+			completeWindows();
+		}
+	}
+	
+	/**
+	 * Stores the occupancy and excess of the forward window starting at 
+	 * the given position.
+	 * @param option
+	 * @param start
+	 * @param count
+	 */
+	private void fillWindow(int option, int start, int count) {
+		final int index = option*csp.getCarsDemand()+start;
+		occupancy[index] = (byte)count;
+		exceedByQ[index] = (byte)(csp.getRequirements()[sequence[start]][option]
+				* Math.max(0, count-csp.getP(option)));
+	}
+	
+	/**
+	 * Fills the windows truncated by the end of the sequence, leaving the 
+	 * built solution ready for the search without a full evaluation.
+	 */
+	private void completeWindows() {
+		final int[][] requirements = csp.getRequirements();
+		final int carsDemand = sequence.length;
+		
+		for (int r=0; r<csp.getNumOptions(); r++) {
+			int count = windowByOption[r];
+			for (int start=Math.max(0, carsDemand-(csp.getQ(r)-1)); 
+					start<carsDemand; start++) {
+				fillWindow(r, start, count);
+				count-=requirements[sequence[start]][r];
+			}
 		}
+		sumCollisions();
 	}
 	
 	public int[] checkPosition(int pos) {
+		int[] fitness = new int[csp.getNumClasses()];
+		checkPosition(pos, fitness);
+		
+		return fitness;
+	}
+	
+	/**
+	 * Fills the given buffer with the collisions of placing each class at 
+	 * the given position. Unavailable classes get Integer.MAX_VALUE.
+	 * @param pos
+	 * @param fitness
+	 */
+	public void checkPosition(int pos, int[] fitness) {
 		if(lastIndex+1<pos) {
 			throw new IllegalArgumentException(
 					"Car checking should skip no position.");
 		}
-		int[] fitness = new int[csp.getNumClasses()];
 		Arrays.fill(fitness, Integer.MAX_VALUE);
 		
-		int[] classes = availableClasses.toArray();
-		
-		for (int car : classes) {
+		for (int i=0; i<availableClasses.size(); i++) {
+			int car = availableClasses.getQuick(i);
 			fitness[car] = checkClassAtPosition(car,pos);
 		}
-		
-		return fitness;
 	}
 	
 	private void disableCarClass(int carClass) {
@@ -243,33 +463,36 @@ public class CSPSolution extends Solution{
 	}
 	
 	public int checkClassAtPosition(int carClass, int pos) {
-		int colissions = 0;
+		int colissions = partialCollisions;
 		
 		final int[][] requirements = csp.getRequirements();
+		final int[] classColissions = tempColissionsByClassAndOption[carClass];
+		
+		//Options not required by the class keep their collisions.
+		System.arraycopy(colissionsByOption, 0, classColissions, 0, 
+				colissionsByOption.length);
 		
-		for (int o = 0; o<csp.getNumOptions(); o++) {
-			int currentColissionsForOption = colissionsByOption[o];
+		for (int o : csp.getRequiredOptions(carClass)) {
+			final int p = csp.getP(o);
+			final int q = csp.getQ(o);
 			
-			if(requirements[carClass][o]>0) {
-				final int p = csp.getP(o);
-				final int q = csp.getQ(o);
-				
-				int occurrences = 1;
-				
+			int occurrences = 1;
+			
+			if(pos==lastIndex+1) {
+				occurrences+=windowByOption[o];
+			} else {
 				int i=1;
 				while (i<q && pos-i>=0) {
 					occurrences+=requirements[sequence[pos-i]][o];
 					i++;
 				}
-				
-				if (occurrences>p) {
-					int newColissions = occurrences-p;
-					currentColissionsForOption+=newColissions;
-				}
 			}
 			
-			tempColissionsByClassAndOption[carClass][o] = currentColissionsForOption;
-			colissions += currentColissionsForOption;
+			if (occurrences>p) {
+				int newColissions = occurrences-p;
+				classColissions[o]+=newColissions;
+				colissions+=newColissions;
+			}
 		}
 		
 		return colissions;
@@ -280,12 +503,27 @@ public class CSPSolution extends Solution{
 		int filteredClasses = classes.length;
 		double[] heuristicValues = new double [filteredClasses];
 		
+		checkHeuristicValues(classes, filteredClasses, position, 
+				heuristicValues);
+		
+		return heuristicValues;
+	}
+	
+	/**
+	 * Fills the given buffer with the heuristic value of the first 
+	 * filteredClasses classes.
+	 * @param classes
+	 * @param filteredClasses
+	 * @param position
+	 * @param heuristicValues
+	 */
+	public void checkHeuristicValues(int [] classes, int filteredClasses, 
+			int position, double[] heuristicValues) {
+		
 		for (int i = 0; i<filteredClasses; i++) {
 			heuristicValues[i] = csp.dynamicUtilizationRateSum(
-					requiringByOption, csp.getCarsDemand()-position, i);
+					requiringByOption, csp.getCarsDemand()-position, classes[i]);
 		}
-		
-		return heuristicValues;
 	}
 
 	// GETTERS & SETTERS
@@ -295,7 +533,11 @@ public class CSPSolution extends Solution{
 	}
 	
 	public double getFitness() {
-		return fitness;
+		return collisions;
+	}
+	
+	public int getCollisions() {
+		return collisions;
 	}
 
 	public int[] getSequence() {
@@ -322,8 +564,24 @@ public class CSPSolution extends Solution{
 		return availableClasses;
 	}
 	
-	public int[][] getColissionMatrix() {
-		return exceedByQ;
+	public int getExcess(int option, int car) {
+		return exceedByQ[option*csp.getCarsDemand()+car];
+	}
+	
+	public int getOccupancy(int option, int car) {
+		return occupancy[option*csp.getCarsDemand()+car];
+	}
+	
+	public int[] getOptionCollisions() {
+		return optionCollisions;
+	}
+	
+	public ConflictIndex getConflicts() {
+		return conflicts;
+	}
+	
+	public long[][] getOptionBitsets() {
+		return optionBits;
 	}
 	
 	public int[] getRequiring() {
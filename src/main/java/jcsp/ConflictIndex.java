@@ -0,0 +1,73 @@
+package jcsp;
+
+import java.util.Arrays;
+
+import jcsp.util.IndexedIntSet;
+
+/**
+ * Positions of a sequence whose window collides for at least one option.
+ * For each position, the number of colliding options is counted, so the 
+ * set is updated in constant time whenever the excess of a window changes 
+ * from or to zero.
+ * @author imoya
+ *
+ */
+public class ConflictIndex {
+
+	private final int[] optionsByCar;
+	
+	private final IndexedIntSet conflicted;
+	
+	public ConflictIndex(int carsDemand) {
+		optionsByCar = new int [carsDemand];
+		conflicted = new IndexedIntSet(carsDemand);
+	}
+	
+	public ConflictIndex(ConflictIndex other) {
+		optionsByCar = Arrays.copyOf(
+				other.optionsByCar, other.optionsByCar.length);
+		conflicted = new IndexedIntSet(other.conflicted);
+	}
+	
+	/**
+	 * Registers the new excess of the window starting at the given car for 
+	 * a single option.
+	 * @param car
+	 * @param oldExcess
+	 * @param newExcess
+	 */
+	public void update(int car, int oldExcess, int newExcess) {
+		if(oldExcess==0 && newExcess>0) {
+			if(optionsByCar[car]==0) {
+				conflicted.add(car);
+			}
+			optionsByCar[car]++;
+		} else if(oldExcess>0 && newExcess==0) {
+			optionsByCar[car]--;
+			if(optionsByCar[car]==0) {
+				conflicted.remove(car);
+			}
+		}
+	}
+	
+	public boolean isConflicted(int car) {
+		return conflicted.contains(car);
+	}
+	
+	public int size() {
+		return conflicted.size();
+	}
+	
+	/**
+	 * Conflicted positions are not sorted.
+	 * @param index
+	 * @return
+	 */
+	public int get(int index) {
+		return conflicted.get(index);
+	}
+	
+	public int[] toSortedArray() {
+		return conflicted.toSortedArray();
+	}
+}
@@ -1,20 +1,38 @@
 package jcsp.algo;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import jcsp.CSPProblem;
 import jcsp.CSPSolution;
 import jcsp.experiment.beans.ACOBean;
 import jcsp.experiment.beans.AlgorithmBean;
 import jcsp.localsearch.LocalSearch;
-import jcsp.util.functions.ArrayFunctions;
 import jcsp.util.functions.Functions;
 import jcsp.util.functions.MatrixFunctions;
+import jcsp.util.random.Randomizer;
+import jcsp.util.random.RandomizerFactory;
+import jcsp.util.random.RandomizerFactory.RandomizerAlgorithm;
+import jcsp.util.random.RandomizerUtils;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.math.NumberUtils;
-import org.apache.commons.math3.stat.StatUtils;
 
 import gnu.trove.list.array.TIntArrayList;
 
@@ -28,25 +46,93 @@ public class ACO extends Algorithm{
 	private double beta;
 	private double delta;
 	
+	/**
+	 * Integral exponents are applied exactly, fractional ones (stored as 
+	 * NOT_INTEGRAL) through the approximate power.
+	 */
+	private static final int NOT_INTEGRAL = -1;
+	private int alphaPower;
+	private int deltaPower;
+	
+	/**
+	 * Heuristic collision weights (1/(1+d))^beta, indexed by the collision 
+	 * difference d.
+	 */
+	private double[] collisionWeights;
+	
 	private double q0;
 	
 	private double tau0;
 	private double localRho;
-	private double globalRho;
+	protected double globalRho;
+	
+	/**
+	 * Pheromone trail structure. Stored values are multiplied by 
+	 * trailScale, so global evaporation only updates the scale.
+	 */
+	protected PheromoneMatrix trail;
+	protected double trailScale;
+	private boolean floatTrail;
+	
+	/**
+	 * Trail values under this bound are read as the bound.
+	 */
+	protected double trailMin = 0;
+	
+	/**
+	 * Below this scale, it is applied to the stored values before they 
+	 * grow too large, even when stored as floats.
+	 */
+	protected static final double MIN_TRAIL_SCALE = 1e-30;
+	
+	/**
+	 * Ants are built in parallel when more than one thread is used. 
+	 * Each ant then draws from its own random stream and reads the trail 
+	 * left by the previous cycle, so results only depend on the seed.
+	 */
+	private int threads;
+	private ForkJoinPool pool = null;
 	
 	/**
-	 * Pheromone trail structure.
-	 * 	[numClases] [numClases] [maxQ].
+	 * When positive, ants first value the candidates of the previous car, 
+	 * up to this number of classes.
 	 */
-	private double[][][] trail;
+	private int candidates;
+	private int[][] candidateLists = null;
+	private double[] staticUtilization;
+	
+	/**
+	 * Number of distinct best ants improved by the local search of each 
+	 * cycle. Each search runs on its own stream, on the construction pool 
+	 * when more than one thread is used.
+	 */
+	private int searchedAnts;
+	
+	/**
+	 * Every checkpointFrequency cycles the search state is written to the 
+	 * checkpoint file, and runs resume from it when it exists. The trail 
+	 * may also start from the trail of another checkpoint.
+	 */
+	private File checkpointFile;
+	private int checkpointFrequency;
+	private File initialTrailFile;
+	private static final int CHECKPOINT_MAGIC = 0x4A435350;
+	private static final int CHECKPOINT_VERSION = 1;
+	
+	/**
+	 * Whether the trail started from the trail of a previous run.
+	 */
+	protected boolean warmStarted = false;
+	
+	private final ChoiceBuffers sequentialBuffers;
 	
 	//Local search
 	protected LocalSearch localSearch;
 	protected LocalSearch overAllSearch;
 	
 	//CSP values
-	private final int numClasses;
-	private final int maxQ;
+	protected final int numClasses;
+	protected final int maxQ;
 	
 	public ACO(CSPProblem csp, AlgorithmBean algBean, boolean verbose) {
 		super(csp,algBean,verbose);
@@ -64,22 +150,281 @@ public class ACO extends Algorithm{
 		globalRho = bean.globalRho;
 		localSearch = bean.localSearch;
 		overAllSearch = bean.overAllSearch;
+		threads = bean.threads;
+		floatTrail = bean.floatTrail;
+		candidates = bean.candidates;
+		searchedAnts = bean.searchedAnts;
+		checkpointFile = bean.checkpointFile!=null 
+				? new File(bean.checkpointFile) : null;
+		checkpointFrequency = bean.checkpointFrequency;
+		initialTrailFile = bean.initialTrail!=null 
+				? new File(bean.initialTrail) : null;
 		maxSteps = 2*maxCycles;
 		
 		maxQ = csp.getMaxQ();
 		numClasses = csp.getNumClasses();
+		
+		sequentialBuffers = new ChoiceBuffers();
+		
+		alphaPower = integralPower(alpha);
+		deltaPower = integralPower(delta);
+		
+		int betaPower = integralPower(beta);
+		collisionWeights = new double [csp.getNumOptions()*maxQ+1];
+		for (int d=0; d<collisionWeights.length; d++) {
+			collisionWeights[d] = power(1.0/(double)(1+d), beta, betaPower);
+		}
+		
+		if(candidates>0) {
+			candidateLists = new int [numClasses][];
+			int[] requiring = csp.createEmptySolution().getRequiring();
+			staticUtilization = new double [numClasses];
+			for (int i=0; i<numClasses; i++) {
+				staticUtilization[i] = csp.dynamicUtilizationRateSum(
+						requiring, csp.getCarsDemand(), i);
+			}
+		}
+	}
+	
+	private static int integralPower(double exponent) {
+		if(exponent>=0 && exponent==Math.rint(exponent) 
+				&& exponent<=Integer.MAX_VALUE) {
+			return (int)exponent;
+		}
+		return NOT_INTEGRAL;
+	}
+	
+	private static double power(double base, double exponent, int integral) {
+		if(integral==NOT_INTEGRAL) {
+			return Functions.pow(base, exponent);
+		}
+		return Functions.pow(base, integral);
+	}
+	
+	private double collisionWeight(int colDifference) {
+		if(colDifference>=0 && colDifference<collisionWeights.length) {
+			return collisionWeights[colDifference];
+		}
+		return power(1.0/(double)(1+colDifference), beta, integralPower(beta));
 	}
 	
 	protected void initializeTrail() {
-		trail = new double [numClasses][numClasses][maxQ];
+		trail = PheromoneMatrix.create(numClasses, maxQ, floatTrail);
+		trail.fill(tau0);
+		trailScale = 1.0;
+		
+		warmStarted = false;
+		if(initialTrailFile!=null) {
+			try (DataInputStream in = openCheckpoint(initialTrailFile)) {
+				readInitialTrail(in);
+			} catch (IOException e) {
+				throw new IllegalStateException(
+						"Initial trail could not be read.", e);
+			}
+			warmStarted = true;
+		}
+	}
+	
+	/*
+	 * 
+	 * CHECKPOINTS
+	 * 
+	 * Header, class option masks, trail and scale, cycle, best solution, 
+	 * seed of the random stream and the state of subclasses.
+	 */
+	
+	private DataInputStream openCheckpoint(File file) throws IOException {
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)));
+		if(in.readInt()!=CHECKPOINT_MAGIC 
+				|| in.readInt()!=CHECKPOINT_VERSION) {
+			in.close();
+			throw new IOException("Not a checkpoint file: "+file);
+		}
+		return in;
+	}
+	
+	/**
+	 * Writes the state reached after the given number of cycles. The 
+	 * random stream is reseeded with a seed drawn from it, so a resumed 
+	 * run continues exactly as this one does. The file is replaced 
+	 * atomically.
+	 * @param cycle
+	 */
+	private void writeCheckpoint(int cycle) {
+		long seed = ((long)csp.random.nextInt(Integer.MAX_VALUE) << 32)
+				| csp.random.nextInt(Integer.MAX_VALUE);
+		csp.random.setSeed(seed);
+		
+		File temp = new File(checkpointFile.getPath()+".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(CHECKPOINT_MAGIC);
+			out.writeInt(CHECKPOINT_VERSION);
+			
+			final long[][] optionMasks = csp.getOptionMasks();
+			out.writeInt(numClasses);
+			out.writeInt(maxQ);
+			out.writeInt(optionMasks[0].length);
+			for (long[] mask : optionMasks) {
+				for (long word : mask) {
+					out.writeLong(word);
+				}
+			}
+			
+			for (int prev=0; prev<numClasses; prev++) {
+				for (int next=0; next<numClasses; next++) {
+					for (int d=0; d<maxQ; d++) {
+						out.writeDouble(trail.get(prev, next, d));
+					}
+				}
+			}
+			out.writeDouble(trailScale);
+			
+			out.writeInt(cycle);
+			out.writeDouble(bestFitness);
+			int[] best = bestFound!=null ? bestFound.getSequence() : new int [0];
+			out.writeInt(best.length);
+			for (int car : best) {
+				out.writeInt(car);
+			}
+			out.writeLong(seed);
+			
+			writeState(out);
+		} catch (IOException e) {
+			throw new IllegalStateException("Checkpoint could not be written.", e);
+		}
 		
-		for (int i=0; i<numClasses; i++) {
-			for (int j=0; j<numClasses; j++) {
-				Arrays.fill(this.trail[i][j],tau0);
+		try {
+			Files.move(temp.toPath(), checkpointFile.toPath(), 
+					StandardCopyOption.REPLACE_EXISTING, 
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new IllegalStateException("Checkpoint could not be written.", e);
+		}
+	}
+	
+	/**
+	 * Restores the state of the checkpoint file, which must come from the 
+	 * same instance.
+	 * @return the number of cycles already done.
+	 */
+	private int readCheckpoint() {
+		try (DataInputStream in = openCheckpoint(checkpointFile)) {
+			final long[][] optionMasks = csp.getOptionMasks();
+			if(in.readInt()!=numClasses || in.readInt()!=maxQ 
+					|| in.readInt()!=optionMasks[0].length) {
+				throw new IllegalArgumentException(
+						"Checkpoint belongs to a different instance.");
+			}
+			for (long[] mask : optionMasks) {
+				for (long word : mask) {
+					if(in.readLong()!=word) {
+						throw new IllegalArgumentException(
+								"Checkpoint belongs to a different instance.");
+					}
+				}
+			}
+			
+			for (int prev=0; prev<numClasses; prev++) {
+				for (int next=0; next<numClasses; next++) {
+					for (int d=0; d<maxQ; d++) {
+						trail.set(prev, next, d, in.readDouble());
+					}
+				}
+			}
+			trailScale = in.readDouble();
+			
+			int cycle = in.readInt();
+			bestFitness = in.readDouble();
+			int[] best = new int [in.readInt()];
+			for (int i=0; i<best.length; i++) {
+				best[i] = in.readInt();
+			}
+			bestFound = best.length>0 ? new CSPSolution(null, csp, best) : null;
+			csp.random.setSeed(in.readLong());
+			
+			readState(in);
+			
+			return cycle;
+		} catch (IOException e) {
+			throw new IllegalStateException("Checkpoint could not be read.", e);
+		}
+	}
+	
+	/**
+	 * Copies the trail of a checkpoint from a related instance. Classes 
+	 * are matched by the options they require, trails between classes 
+	 * without a match and distances beyond the stored ones keep tau0.
+	 * @param in
+	 * @throws IOException
+	 */
+	private void readInitialTrail(DataInputStream in) throws IOException {
+		final int storedClasses = in.readInt();
+		final int storedQ = in.readInt();
+		final int storedWords = in.readInt();
+		
+		long[][] storedMasks = new long [storedClasses][storedWords];
+		for (int stored=0; stored<storedClasses; stored++) {
+			for (int w=0; w<storedWords; w++) {
+				storedMasks[stored][w] = in.readLong();
+			}
+		}
+		
+		//First stored class requiring the same options as each class.
+		final long[][] optionMasks = csp.getOptionMasks();
+		int[] storedOf = new int [numClasses];
+		int matched = 0;
+		for (int c=0; c<numClasses; c++) {
+			storedOf[c] = CSPProblem.EMPTY_CAR;
+			for (int stored=0; stored<storedClasses 
+					&& storedOf[c]==CSPProblem.EMPTY_CAR; stored++) {
+				if(Arrays.equals(storedMasks[stored], optionMasks[c])) {
+					storedOf[c] = stored;
+					matched++;
+				}
+			}
+		}
+		if(matched==0) {
+			throw new IllegalArgumentException(
+					"Initial trail shares no class with the instance.");
+		}
+		
+		double[] values = new double [storedClasses*storedClasses*storedQ];
+		for (int i=0; i<values.length; i++) {
+			values[i] = in.readDouble();
+		}
+		final double storedScale = in.readDouble();
+		
+		for (int prev=0; prev<numClasses; prev++) {
+			for (int next=0; next<numClasses; next++) {
+				if(storedOf[prev]==CSPProblem.EMPTY_CAR 
+						|| storedOf[next]==CSPProblem.EMPTY_CAR) {
+					continue;
+				}
+				final int offset = 
+						(storedOf[prev]*storedClasses+storedOf[next])*storedQ;
+				for (int d=0; d<Math.min(storedQ, maxQ); d++) {
+					trail.set(prev, next, d, values[offset+d]*storedScale);
+				}
 			}
 		}
 	}
 	
+	/**
+	 * Writes the search state kept by subclasses.
+	 * @param out
+	 * @throws IOException
+	 */
+	protected void writeState(DataOutputStream out) throws IOException {}
+	
+	/**
+	 * Reads the state written by writeState.
+	 * @param in
+	 * @throws IOException
+	 */
+	protected void readState(DataInputStream in) throws IOException {}
+	
 	protected CSPSolution[] createAnts() {
 		
 		CSPSolution[] ants = new CSPSolution [this.ants];
@@ -101,13 +446,9 @@ public class ACO extends Algorithm{
 	 */
 	protected void evapore(int[] sequence, double fitness) {
 		
-		for (int i=0; i<numClasses; i++) {
-			for (int j=0; j<numClasses; j++) {
-				for (int y=0; y<maxQ; y++) {
-					trail[i][j][y]*= globalRho;
-				}
-			}
-		}
+		evaporate();
+		
+		final double deposit = (1.0-globalRho) * (1.0/fitness) / trailScale;
 		
 		//Best solution update
 		for (int position=0; position<sequence.length; position++) {
@@ -117,161 +458,548 @@ public class ACO extends Algorithm{
 			while (position+y<sequence.length && y<=maxQ) {
 				int classJ = sequence[position+y];
 				
-				trail[classI][classJ][y-1] += (1.0-globalRho) * (1.0/fitness);
+				trail.add(classI, classJ, y-1, deposit);
 				
 				y++;
 			}
 		}
 	}
 	
-	private double[] calculateValues(CSPSolution z, int position) {
-		int[] classes = z.getAvailableClasses().toArray();
-		int[] sequence = z.getSequence();
+	/**
+	 * Global evaporation, only the trail scale is updated.
+	 */
+	protected void evaporate() {
+		trailScale*= globalRho;
+		if(trailScale<MIN_TRAIL_SCALE) {
+			trail.scale(trailScale);
+			trailScale = 1.0;
+		}
+	}
+	
+	/**
+	 * Trail update at the end of each cycle, once the best solution found 
+	 * so far includes the best ant of the cycle.
+	 * @param sequence best sequence of the cycle.
+	 * @param fitness
+	 * @param step
+	 */
+	protected void globalUpdate(int[] sequence, int fitness, int step) {
+		evapore(sequence, fitness);
+	}
+	
+	/**
+	 * Buffers reused by every choice step of an ant. Values are stored 
+	 * for the available classes only, in the order of the available list.
+	 */
+	private class ChoiceBuffers {
+		final int[] classes = new int [numClasses];
+		final int[] colissionDifferences = new int [numClasses];
+		final double[] values = new double [numClasses];
 		
-		double [] trailValues = new double [numClasses];
-
-		for (int i : classes) {
-			int j =1;
-			while(j<=maxQ && position-j>=0){
-				//TRAIL IS CHECKED AT j-1 because 0 position means distance 1.
-				trailValues[i]+=trail[sequence[position-j]][i][j-1];
-				j++;
+		/**
+		 * Classes already valued at the current step, cleared after it.
+		 */
+		final boolean[] valued = new boolean [numClasses];
+		
+		/**
+		 * Accumulated probability of each available class.
+		 */
+		final double[] roulette = new double [numClasses];
+	}
+	
+	/**
+	 * Bounded min-heap keeping the best valued classes offered to it.
+	 */
+	private class CandidateHeap {
+		final int[] classes = new int [candidates];
+		final double[] values = new double [candidates];
+		int size = 0;
+		
+		void offer(int carClass, double value) {
+			if(size<candidates) {
+				classes[size] = carClass;
+				values[size] = value;
+				siftUp(size);
+				size++;
+			} else if(value>values[0]) {
+				classes[0] = carClass;
+				values[0] = value;
+				siftDown(0);
 			}
-			trailValues[i] = Functions.pow(trailValues[i], alpha);
-//			trailValues[i] = Math.pow(trailValues[i], alpha);
 		}
 		
-		double[] heuristicValues = new double [numClasses];
-
-		for (int c : classes) {
-			double durSumByClass = csp.dynamicUtilizationRateSum(
-					z.getRequiring(), csp.getCarsDemand()-position, c);
-			heuristicValues[c]=Functions.pow(durSumByClass,delta);
-//			heuristicValues[c]=Math.pow(durSumByClass,delta);
+		private void siftUp(int index) {
+			while(index>0) {
+				int parent = (index-1) >>> 1;
+				if(values[parent]<=values[index]) {
+					return;
+				}
+				exchange(parent, index);
+				index = parent;
+			}
 		}
 		
-		double[] colissionsValues = new double [numClasses];
-		int previousColissions = (int)z.getFitness();
-		
-		int[] colissionDifferences = new int [numClasses];
-		Arrays.fill(colissionDifferences, Integer.MAX_VALUE);
+		private void siftDown(int index) {
+			while(true) {
+				int smallest = index;
+				int left = 2*index+1;
+				int right = left+1;
+				if(left<size && values[left]<values[smallest]) {
+					smallest = left;
+				}
+				if(right<size && values[right]<values[smallest]) {
+					smallest = right;
+				}
+				if(smallest==index) {
+					return;
+				}
+				exchange(smallest, index);
+				index = smallest;
+			}
+		}
 		
-		for (int c : classes) {
-			sequence[position]=c;
-			
-			int colDifference = z.checkClassAtPosition(c, position) - previousColissions;
-			colissionDifferences[c] = colDifference;
-			double colissionsValue = 1.0/(double)(1+colDifference);
-//			colissionsValues[c]=Math.pow(colissionsValue,beta);
-			colissionsValues[c]=Functions.pow(colissionsValue,beta);
+		private void exchange(int i, int j) {
+			int carClass = classes[i];
+			classes[i] = classes[j];
+			classes[j] = carClass;
+			double value = values[i];
+			values[i] = values[j];
+			values[j] = value;
 		}
+	}
+	
+	/**
+	 * Candidates of each class are the classes most attractive right after 
+	 * it, weighted by their static utilization rate. They are refreshed 
+	 * from the trail before building the ants of each cycle.
+	 */
+	private void updateCandidateLists() {
+		//The scale is shared by every stored value, so it is not applied.
+		final double minStored = trailMin/trailScale;
 		
-		//Candidate list checking
-		int minColissions = NumberUtils.min(colissionDifferences);
+		for (int prev=0; prev<numClasses; prev++) {
+			CandidateHeap heap = new CandidateHeap();
+			for (int next=0; next<numClasses; next++) {
+				double attraction = Math.max(minStored, trail.get(prev, next, 0));
+				heap.offer(next, power(attraction, alpha, alphaPower) 
+							* power(staticUtilization[next], delta, deltaPower));
+			}
+			candidateLists[prev] = Arrays.copyOf(heap.classes, heap.size);
+		}
+	}
+	
+	/**
+	 * Fills the buffers with the value of the classes to choose from. 
+	 * These are the available candidates of the previous car when any of 
+	 * them can be placed without collisions, every available class 
+	 * otherwise.
+	 * @param z
+	 * @param position
+	 * @param buffers
+	 * @return the number of classes valued.
+	 */
+	private int calculateValues(CSPSolution z, int position, 
+			ChoiceBuffers buffers) {
+		final int[] classes = buffers.classes;
+		int numCandidates = 0;
+		int minColissions = Integer.MAX_VALUE;
 		
-		if(minColissions == 0) {
-			for (int c = 0; c<numClasses; c++) {
-				if(colissionDifferences[c]!=0) {
-					//If a minimumColission is considered, candidates are restricted.
-					colissionsValues[c] = 0;
+		if(candidateLists!=null) {
+			final int[] remaining = z.getRemainingClasses();
+			for (int i : candidateLists[z.getSequence()[position-1]]) {
+				if(remaining[i]>0) {
+					classes[numCandidates] = i;
+					numCandidates++;
+				}
+			}
+			if(numCandidates>0) {
+				minColissions = evaluateClasses(z, position, buffers, 0, 
+						numCandidates);
+				if(minColissions==0) {
+					restrictToMinimum(buffers, numCandidates);
+					return numCandidates;
 				}
 			}
 		}
 		
-		double [] values = new double [numClasses];
+		//Candidates already valued are kept, only the rest are valued.
+		final boolean[] valued = buffers.valued;
+		for (int k=0; k<numCandidates; k++) {
+			valued[classes[k]] = true;
+		}
+		final TIntArrayList available = z.getAvailableClasses();
+		int numValued = numCandidates;
+		for (int k=0; k<available.size(); k++) {
+			int i = available.getQuick(k);
+			if(!valued[i]) {
+				classes[numValued] = i;
+				numValued++;
+			}
+		}
+		for (int k=0; k<numCandidates; k++) {
+			valued[classes[k]] = false;
+		}
 		
-		for (int c = 0; c<numClasses; c++) {
-			values[c] = trailValues[c] * colissionsValues[c] * heuristicValues[c];
+		minColissions = Math.min(minColissions, 
+				evaluateClasses(z, position, buffers, numCandidates, numValued));
+		if(minColissions==0) {
+			restrictToMinimum(buffers, numValued);
 		}
 		
-		return values;
+		return numValued;
+	}
+	
+	/**
+	 * Values the classes already stored in the buffers between both 
+	 * indexes, the last one excluded.
+	 * @param z
+	 * @param position
+	 * @param buffers
+	 * @param beginIndex
+	 * @param endIndex
+	 * @return the minimum collision difference among the classes.
+	 */
+	private int evaluateClasses(CSPSolution z, int position, 
+			ChoiceBuffers buffers, int beginIndex, int endIndex) {
+		final int[] classes = buffers.classes;
+		final int[] colissionDifferences = buffers.colissionDifferences;
+		final double[] values = buffers.values;
+		final int[] sequence = z.getSequence();
+		final int previousColissions = z.getCollisions();
+		final double minStored = trailMin/trailScale;
+		
+		int minColissions = Integer.MAX_VALUE;
+		
+		//Attraction first, one trail row [prev][distance] at a time.
+		Arrays.fill(values, beginIndex, endIndex, 0);
+		int j =1;
+		while(j<=maxQ && position-j>=0){
+			final int prevClass = sequence[position-j];
+			for (int k=beginIndex; k<endIndex; k++) {
+				//TRAIL IS CHECKED AT j-1 because 0 position means distance 1.
+				values[k]+=Math.max(minStored, 
+						trail.get(prevClass, classes[k], j-1));
+			}
+			j++;
+		}
+		
+		for (int k=beginIndex; k<endIndex; k++) {
+			int i = classes[k];
+			
+			double trailValue = values[k] * trailScale;
+			
+			double durSumByClass = csp.dynamicUtilizationRateSum(
+					z.getRequiring(), csp.getCarsDemand()-position, i);
+			
+			sequence[position]=i;
+			int colDifference = z.checkClassAtPosition(i, position) - previousColissions;
+			colissionDifferences[k] = colDifference;
+			minColissions = Math.min(minColissions, colDifference);
+			
+			values[k] = power(trailValue, alpha, alphaPower) 
+					* collisionWeight(colDifference)
+						* power(durSumByClass, delta, deltaPower);
+		}
+		
+		
+		return minColissions;
+	}
+	
+	/**
+	 * Classes adding collisions are discarded when some class does not.
+	 * @param buffers
+	 * @param numValued
+	 */
+	private void restrictToMinimum(ChoiceBuffers buffers, int numValued) {
+		for (int k=0; k<numValued; k++) {
+			if(buffers.colissionDifferences[k]!=0) {
+				buffers.values[k] = 0;
+			}
+		}
 	}
 	
 	private void choose(CSPSolution z, int position) {
+		int chosenClass = chooseClass(z, position, csp.random, 
+				sequentialBuffers);
+		
+		z.addCar(chosenClass);
+		localUpdate(z.getSequence(), position);
+	}
+	
+	private int chooseClass(CSPSolution z, int position, Randomizer randomizer,
+			ChoiceBuffers buffers) {
 		
-		double [] values = calculateValues(z, position);
+		final int numAvailable = calculateValues(z, position, buffers);
+		final int[] classes = buffers.classes;
+		final double[] values = buffers.values;
 		
-		int chosenClass = -1;
+		int chosenClass = CSPProblem.EMPTY_CAR;
 		
-		double random = csp.random.nextDouble();
+		double random = randomizer.nextDouble();
 		
 		if(random<=q0) {
 			//Deterministic - Select Max values
-//			chosenClass = ArrayUtils.indexOf(values, NumberUtils.max(values));
-			chosenClass = ArrayFunctions.getIndexOfMax(values);
+			double max = Double.MIN_VALUE;
+			for (int k=0; k<numAvailable; k++) {
+				if(values[k]!=0.0 && values[k]>max) {
+					max = values[k];
+					chosenClass = classes[k];
+				}
+			}
 			//If there is a double value fail
 			if(chosenClass==CSPProblem.EMPTY_CAR) {
-				TIntArrayList available = z.getAvailableClasses();
-				int remaining=available.size();
-				chosenClass = available.get(csp.random.nextInt(remaining));
+				chosenClass = classes[randomizer.nextInt(numAvailable)];
 			}
 		} else {
 			//Probabilistic - Create roulette with max values
+			final double[] accumulated = buffers.roulette;
 			
-			double total = StatUtils.sum(values);
+			double total = 0;
+			for (int k=0; k<numAvailable; k++) {
+				total+=values[k];
+			}
 			
 			double probAccumulada = 0;
-			double roulette = csp.random.nextDouble();
+			for (int k=0; k<numAvailable; k++) {
+				probAccumulada+=values[k]/total;
+				accumulated[k] = probAccumulada;
+			}
 			
-			do {
-				chosenClass++;
-				probAccumulada+=values[chosenClass]/total;
-			} while (probAccumulada<=roulette && chosenClass<csp.getNumClasses());
-
-			if(chosenClass==0 && !z.getAvailableClasses().contains(0)) {
-				TIntArrayList available = z.getAvailableClasses();
-				int remaining=available.size();
-				chosenClass = available.get(csp.random.nextInt(remaining));
+			double roulette = randomizer.nextDouble();
+			
+			if(!(total>0)) {
+				//No class is valued, so any of them is chosen.
+				chosenClass = classes[randomizer.nextInt(numAvailable)];
+			} else {
+				//First class whose accumulated probability exceeds the roulette.
+				int low = 0;
+				int high = numAvailable-1;
+				while(low<high) {
+					int middle = (low+high) >>> 1;
+					if(accumulated[middle]<=roulette) {
+						low = middle+1;
+					} else {
+						high = middle;
+					}
+				}
+				chosenClass = classes[low];
 			}
 		}
 
-		z.addCar(chosenClass);
-		int[] sequence = z.getSequence();
+		return chosenClass;
+	}
+	
+	/**
+	 * Local trail update for the car placed at the given position.
+	 * @param sequence
+	 * @param position
+	 */
+	protected void localUpdate(int[] sequence, int position) {
+		int chosenClass = sequence[position];
+		
+		//Stored values move towards tau0 at the current scale.
+		final double scaledTau0 = (1.0-localRho) * tau0 / trailScale;
 		
-		//Local trail update
 		int i=1;
 		while(position-i>=0 && i<=maxQ) {
 			int prevClass = sequence[position-i];
 			
-			trail[prevClass][chosenClass][i-1] =
-					(trail[prevClass][chosenClass][i-1] * localRho)
-						+ ((1.0-localRho)*tau0);
+			trail.update(prevClass, chosenClass, i-1, localRho, scaledTau0);
 			i++;
 		}
 	}
 	
-	protected double[] growAnts(CSPSolution[] ants) {
+	protected int[] growAnts(CSPSolution[] ants) {
 		
-		//Fill sequences for every ant
-		for (int p=1; p<csp.getCarsDemand(); p++) {
-			for (int a = 0; a<this.ants; a++) {
-				choose(ants[a],p);
+		if(candidateLists!=null) {
+			updateCandidateLists();
+		}
+		
+		if(threads>1) {
+			growAntsParallel(ants);
+		} else {
+			//Fill sequences for every ant
+			for (int p=1; p<csp.getCarsDemand(); p++) {
+				for (int a = 0; a<this.ants; a++) {
+					choose(ants[a],p);
+				}
 			}
 		}
 		
-		double[] colissionsByAnt = new double[this.ants];
+		int[] colissionsByAnt = new int[this.ants];
 		//Retrieve fitness
 		for (int a = 0; a<this.ants; a++) {
-			colissionsByAnt[a] = ants[a].getFitness();
+			colissionsByAnt[a] = ants[a].getCollisions();
 		}
 
 		return colissionsByAnt;
 	}
 	
+	/**
+	 * Builds every ant on its own task. The trail is only read while the 
+	 * ants are built; local updates are applied afterwards, ant by ant, by 
+	 * replaying their sequences.
+	 * @param ants
+	 */
+	private void growAntsParallel(CSPSolution[] ants) {
+		List<Callable<CSPSolution>> tasks = 
+				new ArrayList<Callable<CSPSolution>>(this.ants);
+		
+		for (int a = 0; a<this.ants; a++) {
+			final CSPSolution ant = ants[a];
+			final Randomizer randomizer = deriveRandomizer();
+			
+			tasks.add(() -> {
+				ChoiceBuffers buffers = new ChoiceBuffers();
+				
+				for (int p=1; p<csp.getCarsDemand(); p++) {
+					int chosenClass = chooseClass(ant, p, randomizer, buffers);
+					ant.addCar(chosenClass);
+				}
+				return ant;
+			});
+		}
+		
+		try {
+			for (Future<CSPSolution> built : getPool().invokeAll(tasks)) {
+				built.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("Ant construction failed.", e);
+		}
+		
+		for (CSPSolution ant : ants) {
+			int[] sequence = ant.getSequence();
+			for (int p=1; p<sequence.length; p++) {
+				localUpdate(sequence, p);
+			}
+		}
+	}
+	
+	/**
+	 * Streams are derived in order from the main one, so results do not 
+	 * depend on the number of threads.
+	 * @return
+	 */
+	private Randomizer deriveRandomizer() {
+		return RandomizerFactory.createRandomizer(
+				RandomizerAlgorithm.XOR_SHIFT_128_PLUS_FAST,
+				RandomizerUtils.computeMurmurHash3(
+						((long)csp.random.nextInt(Integer.MAX_VALUE) << 32)
+							| csp.random.nextInt(Integer.MAX_VALUE)));
+	}
+	
+	private ForkJoinPool getPool() {
+		if(pool==null) {
+			pool = new ForkJoinPool(threads);
+		}
+		return pool;
+	}
+	
+	/**
+	 * Applies the local search to the best distinct ants of the cycle. 
+	 * Each ant is searched on a copy bound to a problem with its own 
+	 * random stream.
+	 * @param ants
+	 * @param colissionsByAnt
+	 * @return the best searched ant, bound to the problem.
+	 */
+	private Result searchBestAnts(CSPSolution[] ants, int[] colissionsByAnt) {
+		List<CSPSolution> selected = new ArrayList<CSPSolution>(searchedAnts);
+		boolean[] considered = new boolean [this.ants];
+		
+		//Best ants first, skipping sequences already selected.
+		while(selected.size()<searchedAnts) {
+			int next = -1;
+			for (int a = 0; a<this.ants; a++) {
+				if(!considered[a] && (next==-1 
+						|| colissionsByAnt[a]<colissionsByAnt[next])) {
+					next = a;
+				}
+			}
+			if(next==-1) {
+				break;
+			}
+			considered[next] = true;
+			
+			boolean repeated = false;
+			for (CSPSolution ant : selected) {
+				repeated |= Arrays.equals(ant.getSequence(), 
+						ants[next].getSequence());
+			}
+			if(!repeated) {
+				selected.add(ants[next]);
+			}
+		}
+		
+		List<Callable<Result>> tasks = 
+				new ArrayList<Callable<Result>>(selected.size());
+		for (CSPSolution ant : selected) {
+			final CSPSolution start = ant.copy(csp.withRandom(deriveRandomizer()));
+			tasks.add(() -> {
+				Result result = iterateLocalSearch(localSearch, start);
+				if(result.solution==null) {
+					return new Result(start, start.getCollisions());
+				}
+				return result;
+			});
+		}
+		
+		List<Result> results = new ArrayList<Result>(tasks.size());
+		try {
+			if(threads>1) {
+				for (Future<Result> searched : getPool().invokeAll(tasks)) {
+					results.add(searched.get());
+				}
+			} else {
+				for (Callable<Result> task : tasks) {
+					results.add(task.call());
+				}
+			}
+		} catch (Exception e) {
+			throw new IllegalStateException("Ant search failed.", e);
+		}
+		
+		Result best = results.get(0);
+		for (Result result : results) {
+			if(result.fitness<best.fitness) {
+				best = result;
+			}
+		}
+		
+		return new Result(best.solution.copy(csp), best.fitness);
+	}
+	
+	/**
+	 * Stops the threads used for building ants, if any.
+	 */
+	protected void shutdown() {
+		if(pool!=null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+	
 	public void optimize() {
 		initializeTrail();
 		int step = 0;
+		if(checkpointFile!=null && checkpointFile.exists()) {
+			step = readCheckpoint();
+		}
+		int lastCheckpoint = step;
 		while (bestFitness>CSPProblem.FEASIBLE_FITNESS && step<maxCycles) {
 			//Initialize Ants
 			CSPSolution[] ants = createAnts();
 
-			double[] colissionsByAnt = growAnts(ants);
+			int[] colissionsByAnt = growAnts(ants);
 			
 			//Best of the cycle
-			double bestFitness = NumberUtils.min(colissionsByAnt);
+			int bestFitness = NumberUtils.min(colissionsByAnt);
 			int bestAnt = ArrayUtils.indexOf(colissionsByAnt, bestFitness);
 
-			int[] bestSequence = ants[bestAnt].getSequence();
+			//Completed ants are already evaluated for the search.
+			CSPSolution bestSolution = ants[bestAnt];
+			int[] bestSequence = bestSolution.getSequence();
 
 			if(verbose) {
 				System.out.println("Best ant before LS: "+bestFitness);
@@ -280,29 +1008,44 @@ public class ACO extends Algorithm{
 			//evapore(bestSequence, bestFitness);
 
 			if(localSearch!=null) {
-				Result localResult = iterateLocalSearch(
-						localSearch, 
-						new CSPSolution(null, csp, bestSequence)
-					);
+				Result localResult = searchedAnts>1 
+						? searchBestAnts(ants, colissionsByAnt)
+						: iterateLocalSearch(
+								localSearch, 
+								(CSPSolution) bestSolution.copy()
+							);
 				if(localResult.solution!=null && localResult.fitness<bestFitness) {
 					bestFitness = (int)localResult.fitness;
-					bestSequence = localResult.solution.getSequence();
+					bestSolution = localResult.solution;
+					bestSequence = bestSolution.getSequence();
 				}
 				if(verbose) {
 					System.out.println("Best ant after LS: "+bestFitness);
 				}
 			}
 
-			//Shouldnt we evaporate after LS?
-			evapore(bestSequence, bestFitness);
-			
 			if(bestFitness<this.bestFitness) {
 				this.bestFitness = bestFitness;
-				this.bestFound = new CSPSolution(null, csp, bestSequence);
+				this.bestFound = bestSolution;
 			}
 			
+			//Shouldnt we evaporate after LS?
+			globalUpdate(bestSequence, bestFitness, step);
+			
 			//Next cycle
 			step++;
+			
+			if(checkpointFile!=null && checkpointFrequency>0 
+					&& step%checkpointFrequency==0) {
+				writeCheckpoint(step);
+				lastCheckpoint = step;
+			}
+		}
+		
+		//A preempted run resumes at the over all search.
+		if(checkpointFile!=null && checkpointFrequency>0 
+				&& lastCheckpoint!=step) {
+			writeCheckpoint(step);
 		}
 
 		//Over All Local Search
@@ -326,6 +1069,8 @@ public class ACO extends Algorithm{
 			}
 		}
 		
+		shutdown();
+		
 		if(verbose) {
 			System.out.println("Final ant : "+bestFitness);
 			System.out.println("Final sequence: " + Arrays.toString(
@@ -340,11 +1085,12 @@ public class ACO extends Algorithm{
 		CSPSolution[] ants = createAnts();
 		
 		growAnts(ants);
+		shutdown();
 		
 		for (CSPSolution z: ants) {
-			double fitness = z.getFitness();
+			int fitness = z.getCollisions();
 			int[][] colissions = csp.createExcessMatrix(z.getSequence());
-			double debugFitness = MatrixFunctions.addMatrix(colissions);
+			int debugFitness = MatrixFunctions.addMatrix(colissions);
 			if(debugFitness != fitness) {
 				throw new Exception("Ants checking failed.");
 			}
@@ -0,0 +1,62 @@
+package jcsp.algo;
+
+import java.util.Arrays;
+
+/**
+ * Pheromone matrix stored as a single float array. For each previous class 
+ * and distance, the values of every next class are contiguous:
+ * 	[numClasses * maxQ * numClasses].
+ * @author imoya
+ *
+ */
+public class FloatPheromoneMatrix implements PheromoneMatrix {
+	
+	private final int numClasses;
+	private final int maxQ;
+	
+	private final float[] trail;
+	
+	public FloatPheromoneMatrix(int numClasses, int maxQ) {
+		this.numClasses = numClasses;
+		this.maxQ = maxQ;
+		trail = new float [numClasses*maxQ*numClasses];
+	}
+	
+	private int rowOf(int prev, int distance) {
+		return (prev*maxQ + distance)*numClasses;
+	}
+
+	@Override
+	public double get(int prev, int next, int distance) {
+		return trail[rowOf(prev, distance)+next];
+	}
+
+	@Override
+	public void add(int prev, int next, int distance, double value) {
+		trail[rowOf(prev, distance)+next]+=value;
+	}
+
+	@Override
+	public void set(int prev, int next, int distance, double value) {
+		trail[rowOf(prev, distance)+next] = (float)value;
+	}
+
+	@Override
+	public void update(int prev, int next, int distance, double rho,
+			double increment) {
+		int index = rowOf(prev, distance)+next;
+		trail[index] = (float)(trail[index]*rho + increment);
+	}
+
+	@Override
+	public void fill(double value) {
+		Arrays.fill(trail, (float)value);
+	}
+
+	@Override
+	public void scale(double factor) {
+		for (int i=0; i<trail.length; i++) {
+			trail[i]*=factor;
+		}
+	}
+}
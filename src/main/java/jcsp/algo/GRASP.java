@@ -45,10 +45,7 @@ public class GRASP extends Algorithm{
 	}
 	
 	protected CSPSolution constructivePhase() {
-		CSPSolution greedy = csp.createHeuristic(alpha);
-		greedy.fullEvaluation();
-		
-		return greedy;
+		return csp.createHeuristic(alpha);
 	}
 	
 	public void optimize() {
@@ -0,0 +1,172 @@
+package jcsp.algo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import jcsp.CSPProblem;
+import jcsp.experiment.beans.AlgorithmBean;
+import jcsp.experiment.beans.MMASBean;
+
+/**
+ * MAX-MIN Ant System. Trail values are kept between tauMin and tauMax, 
+ * the best ant of the cycle deposits but every few cycles the best 
+ * solution found so far does, and the trail is reinitialized when the 
+ * search stagnates.
+ * 
+ * Classes are followed by many different classes in good sequences, so 
+ * the branching factor of the trail stays high even once it converges. 
+ * Stagnation is measured as the cycles without improving the best 
+ * solution instead.
+ * 
+ * There are no local trail updates.
+ * 
+ * A trail taken from a previous run is kept instead of being filled with 
+ * the upper bound.
+ * @author imoya
+ *
+ */
+public class MMAS extends ACO {
+	
+	/**
+	 * Probability of building the best solution once the trail converges, 
+	 * sets the ratio between both bounds.
+	 */
+	private double pBest;
+	
+	/**
+	 * Every this many cycles, the best solution found so far deposits 
+	 * instead of the best ant of the cycle.
+	 */
+	private int bestSoFarFrequency;
+	
+	/**
+	 * Cycles without improvement before reinitializing the trail.
+	 */
+	private int stagnationCycles;
+	
+	private double tauMax = Double.MAX_VALUE;
+	
+	private double lastBestFitness = Double.MAX_VALUE;
+	private int lastImprovement = 0;
+	private int restarts = 0;
+
+	public MMAS(CSPProblem csp, AlgorithmBean algBean, boolean verbose) {
+		super(csp, algBean, verbose);
+		
+		MMASBean bean = (MMASBean)algBean;
+		
+		pBest = bean.pBest;
+		bestSoFarFrequency = bean.bestSoFarFrequency;
+		stagnationCycles = bean.stagnationCycles;
+	}
+	
+	@Override
+	protected void initializeTrail() {
+		super.initializeTrail();
+		tauMax = Double.MAX_VALUE;
+		trailMin = 0;
+		lastBestFitness = Double.MAX_VALUE;
+		lastImprovement = 0;
+		restarts = 0;
+	}
+	
+	@Override
+	protected void localUpdate(int[] sequence, int position) {
+		//Only the global update changes the trail.
+	}
+	
+	@Override
+	protected void globalUpdate(int[] sequence, int fitness, int step) {
+		if(bestFitness<=CSPProblem.FEASIBLE_FITNESS) {
+			//Search is over.
+			return;
+		}
+		
+		double depositFitness = fitness;
+		
+		if(bestFound!=null && (step+1)%bestSoFarFrequency==0) {
+			sequence = bestFound.getSequence();
+			depositFitness = bestFitness;
+		}
+		
+		boolean firstBounds = tauMax==Double.MAX_VALUE;
+		updateBounds();
+		if(firstBounds && !warmStarted) {
+			//The trail starts at the upper bound once it is known.
+			trailScale = 1.0;
+			trail.fill(tauMax);
+		}
+		
+		evaporate();
+		
+		final double deposit = (1.0-globalRho) * (1.0/depositFitness);
+		
+		for (int position=0; position<sequence.length; position++) {
+			int classI = sequence[position];
+			int y = 1;
+
+			while (position+y<sequence.length && y<=maxQ) {
+				int classJ = sequence[position+y];
+				
+				//Values under the minimum were lazily kept there.
+				double value = Math.max(trailMin, 
+						trail.get(classI, classJ, y-1) * trailScale);
+				value = Math.min(tauMax, value + deposit);
+				trail.set(classI, classJ, y-1, value / trailScale);
+				
+				y++;
+			}
+		}
+		
+		if(bestFitness<lastBestFitness) {
+			lastBestFitness = bestFitness;
+			lastImprovement = step;
+		} else if(step-lastImprovement>=stagnationCycles) {
+			//Stagnation, the trail is reset to the upper bound.
+			trailScale = 1.0;
+			trail.fill(tauMax);
+			lastImprovement = step;
+			restarts++;
+			
+			if(verbose) {
+				System.out.println("Trail reinitialized at cycle "+step);
+			}
+		}
+	}
+	
+	/**
+	 * Bounds follow the best solution found so far.
+	 */
+	private void updateBounds() {
+		tauMax = 1.0 / bestFitness;
+		
+		double pDec = Math.pow(pBest, 1.0/csp.getCarsDemand());
+		double avgChoices = Math.max(1.0, numClasses/2.0 - 1.0);
+		
+		trailMin = Math.min(tauMax, 
+				tauMax * (1.0-pDec) / (avgChoices * pDec));
+	}
+	
+	@Override
+	protected void writeState(DataOutputStream out) throws IOException {
+		out.writeDouble(tauMax);
+		out.writeDouble(trailMin);
+		out.writeDouble(lastBestFitness);
+		out.writeInt(lastImprovement);
+		out.writeInt(restarts);
+	}
+	
+	@Override
+	protected void readState(DataInputStream in) throws IOException {
+		tauMax = in.readDouble();
+		trailMin = in.readDouble();
+		lastBestFitness = in.readDouble();
+		lastImprovement = in.readInt();
+		restarts = in.readInt();
+	}
+	
+	public int getRestarts() {
+		return restarts;
+	}
+}
@@ -0,0 +1,48 @@
+package jcsp.algo;
+
+/**
+ * Pheromone trail between pairs of classes placed at a given distance. 
+ * Distances are zero based: 0 means consecutive cars.
+ * @author imoya
+ *
+ */
+public interface PheromoneMatrix {
+	
+	public double get(int prev, int next, int distance);
+	
+	public void add(int prev, int next, int distance, double value);
+	
+	public void set(int prev, int next, int distance, double value);
+	
+	/**
+	 * Sets the value to value * rho + increment.
+	 * @param prev
+	 * @param next
+	 * @param distance
+	 * @param rho
+	 * @param increment
+	 */
+	public void update(int prev, int next, int distance, double rho, 
+			double increment);
+	
+	public void fill(double value);
+	
+	public void scale(double factor);
+	
+	/**
+	 * Matrix for the given number of classes and distances. Float 
+	 * precision halves the memory used.
+	 * @param numClasses
+	 * @param maxQ
+	 * @param floatPrecision
+	 * @return
+	 */
+	public static PheromoneMatrix create(int numClasses, int maxQ, 
+			boolean floatPrecision) {
+		if(floatPrecision) {
+			return new FloatPheromoneMatrix(numClasses, maxQ);
+		} else {
+			return new DoublePheromoneMatrix(numClasses, maxQ);
+		}
+	}
+}
@@ -42,7 +42,6 @@ public class VNS extends Algorithm{
 		
 		if(greedyInitialSolution) {
     		initial = csp.createHeuristic(0.0);
-    		initial.fullEvaluation();
     	} else {
     		initial = csp.createRandomSolution();
     	}
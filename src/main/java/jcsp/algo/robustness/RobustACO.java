@@ -24,13 +24,15 @@ public class RobustACO extends ACO {
 			//Initialize Ants
 			CSPSolution[] ants = createAnts();
 
-			double[] colissionsByAnt = growAnts(ants);
+			int[] colissionsByAnt = growAnts(ants);
 			
 			//Best of the cycle
-			double bestFitness = NumberUtils.min(colissionsByAnt);
+			int bestFitness = NumberUtils.min(colissionsByAnt);
 			int bestAnt = ArrayUtils.indexOf(colissionsByAnt, bestFitness);
 
-			int[] bestSequence = ants[bestAnt].getSequence();
+			//Completed ants are already evaluated for the search.
+			CSPSolution bestSolution = ants[bestAnt];
+			int[] bestSequence = bestSolution.getSequence();
 
 			if(verbose) {
 				System.out.println("Best ant before LS: "+bestFitness);
@@ -41,11 +43,12 @@ public class RobustACO extends ACO {
 			if(localSearch!=null) {
 				Result localResult = iterateLocalSearch(
 						localSearch, 
-						new CSPSolution(null, csp, bestSequence)
+						(CSPSolution) bestSolution.copy()
 					);
 				if(localResult.solution!=null && localResult.fitness<bestFitness) {
 					bestFitness = (int)localResult.fitness;
-					bestSequence = localResult.solution.getSequence();
+					bestSolution = localResult.solution;
+					bestSequence = bestSolution.getSequence();
 				}
 				if(verbose) {
 					System.out.println("Best ant after LS: "+bestFitness);
@@ -54,7 +57,7 @@ public class RobustACO extends ACO {
 			
 			
 			
-			CSPSolution robustAnt = new CSPSolution(null, csp, bestSequence);
+			CSPSolution robustAnt = bestSolution;
 			
 			double robustFitness = evaluator.evaluateRobustness(robustAnt).averagedMinRobustness;
 			
@@ -96,6 +99,8 @@ public class RobustACO extends ACO {
 			}
 		}
 		
+		shutdown();
+		
 		if(verbose) {
 			System.out.println("Final ant : "+bestFitness);
 			System.out.println("Final sequence: " + Arrays.toString(
@@ -30,7 +30,7 @@ public class SimpleACOApp {
 //		String exampleFile="../xCSP/instances/classical/p41_66.txt";
 		String exampleFile="./instances/200/pb_200_01.txt";
 
-		CSPProblem csp = CSPParser.load(exampleFile);
+		CSPProblem csp = CSPParser.loadProfiles(exampleFile);
 		boolean verbose = false;
 		
 		//ACO Parameters
@@ -86,7 +86,7 @@ public class SimpleACOApp {
         	
         	System.out.println("Final fitness: "+aco.getFinalFitness());
         	System.out.println("Final sequence: "+Arrays.toString(
-        			aco.getBest().getSequence()));
+        			csp.restoreClasses(aco.getBest().getSequence())));
 		}
 	}
 
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import jcsp.CSPProblem;
@@ -117,7 +118,7 @@ public class SimpleGRASPApp {
 		String resulPath = logFolder+"/"+name+"_"+signature+".log";
 		FileWriter fw = new FileWriter(resulPath);
 		
-		CSPProblem csp = CSPParser.load(sequenceFile);
+		CSPProblem csp = CSPParser.loadProfiles(sequenceFile);
         
 		String message = "Starting GRASP experiment with file: " + sequenceFile+"\n";
         System.out.print(message);
@@ -166,7 +167,8 @@ public class SimpleGRASPApp {
         	System.out.print(message);
             fw.write(message);
             
-            message = best.toString()+"\n";
+            message = Arrays.toString(csp.restoreClasses(
+            		best.getSequence()))+"\n";
             System.out.print(message);
             fw.write(message);
             
@@ -28,7 +28,7 @@ public class SimpleRandomDescentApp
     {
         String exampleFile="../xCSP/instances/test_10_cars.txt";
         
-        CSPProblem csp = CSPParser.load(exampleFile);
+        CSPProblem csp = CSPParser.loadProfiles(exampleFile);
         
         System.out.println("Starting experiment with file: " + exampleFile);
         
@@ -54,7 +54,8 @@ public class SimpleRandomDescentApp
 		    // print results
 		    if(randomDescent.getBestSolution() != null){
 		        System.out.println("Best sequence: " + Arrays.toString(
-		        		randomDescent.getBestSolution().getSequence()));
+		        		csp.restoreClasses(
+		        				randomDescent.getBestSolution().getSequence())));
 		        System.out.println("Best sequence fitness: " + 
 		        		randomDescent.getBestSolutionEvaluation());
 		    } else {
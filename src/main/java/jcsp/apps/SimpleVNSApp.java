@@ -28,7 +28,7 @@ public class SimpleVNSApp {
 	public static void main(String[] args) throws IOException {
 //		String exampleFile="../xCSP/instances/test_10_cars.txt";
 		String exampleFile="../xCSP/instances/classical/p41_66.txt";
-        CSPProblem csp = CSPParser.load(exampleFile);
+        CSPProblem csp = CSPParser.loadProfiles(exampleFile);
         long maxSteps = 100000;
         
         System.out.println("Starting VNS experiment with file: " + exampleFile);
@@ -67,7 +67,7 @@ public class SimpleVNSApp {
         			vns.getBestSolutionEvaluation().getValue();
         	
         	System.out.println("Improved sequence: " + Arrays.toString(
-					improved.getSequence()));
+					csp.restoreClasses(improved.getSequence())));
 	        System.out.println("Improved sequence fitness: " + 
 	        		improvedFitness);
         }
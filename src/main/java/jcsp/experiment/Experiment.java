@@ -107,7 +107,10 @@ public class Experiment {
 				+ "\n";
 		System.out.print(message);
 
-		CSPProblem csp = CSPParser.load(sequenceFile);
+		//Robustness is evaluated over the original classes.
+		CSPProblem csp = computeRobustness 
+				? CSPParser.load(sequenceFile) 
+				: CSPParser.loadProfiles(sequenceFile);
 		
 		AlgorithmBean bean;
 		try {
@@ -153,7 +156,8 @@ public class Experiment {
 			logWriter.newLine();
 
 //			if(!computeRobustness) {
-				logWriter.write(Arrays.toString(alg.getBest().getSequence()));
+				logWriter.write(Arrays.toString(
+						csp.restoreClasses(alg.getBest().getSequence())));
 				logWriter.newLine();
 				logWriter.newLine();
 				
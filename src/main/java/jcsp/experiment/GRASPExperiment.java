@@ -4,6 +4,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Arrays;
 
 import jcsp.CSPProblem;
 import jcsp.CSPSolution;
@@ -109,7 +110,7 @@ public class GRASPExperiment {
 				+ "\n";
 		System.out.print(message);
 
-		CSPProblem csp = CSPParser.load(sequenceFile);
+		CSPProblem csp = CSPParser.loadProfiles(sequenceFile);
 
 		GRASPBean bean = null;
 		try {
@@ -144,7 +145,8 @@ public class GRASPExperiment {
 			System.out.print(message);
 			// fw.write(message);
 
-			message = best.toString() + "\n";
+			message = Arrays.toString(csp.restoreClasses(
+					best.getSequence())) + "\n";
 			System.out.print(message);
 			// fw.write(message);
 
@@ -4,6 +4,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -99,7 +100,7 @@ public class VNSExperiment {
 				+ "\n";
 		System.out.print(message);
 
-		CSPProblem csp = CSPParser.load(sequenceFile);
+		CSPProblem csp = CSPParser.loadProfiles(sequenceFile);
 		
 		VNSBean bean = null;
 		try {
@@ -147,7 +148,8 @@ public class VNSExperiment {
 			System.out.print(message);
 			// fw.write(message);
 
-			message = best.toString() + "\n";
+			message = Arrays.toString(csp.restoreClasses(
+					best.getSequence())) + "\n";
 			System.out.print(message);
 			// fw.write(message);
 
@@ -25,11 +25,57 @@ public class ACOBean extends AlgorithmBean{
 
 	public LocalSearch overAllSearch;
 	
+	/**
+	 * Threads used for building the ants of each cycle. A single thread 
+	 * keeps the sequential construction.
+	 */
+	public int threads = 1;
+	
+	/**
+	 * Stores the pheromone trail as floats instead of doubles.
+	 */
+	public boolean floatTrail = false;
+	
+	/**
+	 * Size of the candidate list of each class. Every available class is
+	 * valued at each step when it is not positive, which is the default: 
+	 * small lists build ants faster but lose quality (k=4 on pb_400_01), 
+	 * and dense instances fall back to the full scan at most steps.
+	 */
+	public int candidates = 0;
+	
+	/**
+	 * Number of distinct best ants improved by the local search of each 
+	 * cycle. Several ants are searched on the construction threads.
+	 */
+	public int searchedAnts = 1;
+	
+	/**
+	 * File where the search state is written every checkpointFrequency 
+	 * cycles, runs resume from it when it exists.
+	 */
+	public String checkpointFile = null;
+	public int checkpointFrequency = 0;
+	
+	/**
+	 * Checkpoint of a previous run, maybe on a related instance, whose 
+	 * trail is used instead of tau0.
+	 */
+	public String initialTrail = null;
+	
 	public ACOBean() {}
 
 	public ACOBean(int ants, int maxCycles, double alpha, double beta,
 			double delta, double q0, double tau0, double localRho,
 			double globalRho, LocalSearch localSearch, LocalSearch overAllSearch) {
+		this(ants, maxCycles, alpha, beta, delta, q0, tau0, localRho, 
+				globalRho, localSearch, overAllSearch, 1);
+	}
+
+	public ACOBean(int ants, int maxCycles, double alpha, double beta,
+			double delta, double q0, double tau0, double localRho,
+			double globalRho, LocalSearch localSearch, LocalSearch overAllSearch,
+			int threads) {
 		super();
 		this.ants = ants;
 		this.maxCycles = maxCycles;
@@ -42,6 +88,7 @@ public class ACOBean extends AlgorithmBean{
 		this.globalRho = globalRho;
 		this.localSearch = localSearch;
 		this.overAllSearch = overAllSearch;
+		this.threads = threads;
 	}
 
 	@Override
@@ -58,6 +105,33 @@ public class ACOBean extends AlgorithmBean{
 		localRho = reader.getParameterDouble("localRho");
 		globalRho = reader.getParameterDouble("globalRho");
 		
+		//Optional, sequential construction by default.
+		String threads = reader.getParameterString("threads");
+		if(threads!=null) {
+			this.threads = Integer.parseInt(threads);
+		}
+		floatTrail = reader.getParameterBoolean("floatTrail");
+		
+		//Optional, every class is valued by default.
+		String candidates = reader.getParameterString("candidates");
+		if(candidates!=null) {
+			this.candidates = Integer.parseInt(candidates);
+		}
+		
+		//Optional, only the best ant is searched by default.
+		String searchedAnts = reader.getParameterString("searchedAnts");
+		if(searchedAnts!=null) {
+			this.searchedAnts = Integer.parseInt(searchedAnts);
+		}
+		
+		//Optional, no checkpoints by default.
+		checkpointFile = reader.getParameterString("checkpointFile");
+		String checkpointFrequency = reader.getParameterString("checkpointFrequency");
+		if(checkpointFrequency!=null) {
+			this.checkpointFrequency = Integer.parseInt(checkpointFrequency);
+		}
+		initialTrail = reader.getParameterString("initialTrail");
+		
 		try {
 			String localSearh = reader.getParameterString("localSearch");
 			String[] neighbourhood = reader.getParameterStringArray("neighbourhood");
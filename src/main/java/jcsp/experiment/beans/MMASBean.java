@@ -0,0 +1,50 @@
+package jcsp.experiment.beans;
+
+import jcsp.CSPProblem;
+import jcsp.algo.Algorithm;
+import jcsp.algo.MMAS;
+import jcsp.localsearch.LocalSearch;
+import jcsp.util.io.ConfigFileReader;
+
+public class MMASBean extends ACOBean {
+	
+	public double pBest;
+	public int bestSoFarFrequency;
+	
+	public int stagnationCycles;
+	
+	public MMASBean() {}
+
+	public MMASBean(int ants, int maxCycles, double alpha, double beta,
+			double delta, double q0, double tau0, double globalRho, 
+			LocalSearch localSearch, LocalSearch overAllSearch,
+			double pBest, int bestSoFarFrequency, int stagnationCycles) {
+		//No local trail updates.
+		super(ants, maxCycles, alpha, beta, delta, q0, tau0, 1.0, globalRho, 
+				localSearch, overAllSearch);
+		this.pBest = pBest;
+		this.bestSoFarFrequency = bestSoFarFrequency;
+		this.stagnationCycles = stagnationCycles;
+	}
+
+	@Override
+	public void readConfigFile(ConfigFileReader reader){
+		super.readConfigFile(reader);
+		
+		//MMAS has no local trail updates, other values would be misleading.
+		if(localRho!=1.0) {
+			throw new IllegalArgumentException(
+					"MMAS requires localRho=1.0, found "+localRho);
+		}
+		
+		pBest = reader.getParameterDouble("pBest");
+		bestSoFarFrequency = reader.getParameterInteger("bestSoFarFrequency");
+		
+		stagnationCycles = reader.getParameterInteger("stagnationCycles");
+	}
+
+	@Override
+	public Algorithm createAlgorithmInstance(CSPProblem csp, boolean verbose) {
+		return new MMAS(csp, this, verbose);
+	}
+}
@@ -0,0 +1,39 @@
+package jcsp.localsearch;
+
+import jcsp.CSPProblem;
+import jcsp.CSPSolution;
+import jcsp.move.CSPMove;
+
+import org.jamesframework.core.search.algo.RandomDescent;
+import org.jamesframework.core.search.neigh.Move;
+import org.jamesframework.core.search.neigh.Neighbourhood;
+
+/**
+ * Random descent screening CSP moves with a bounded delta: the evaluation 
+ * of a move stops as soon as it cannot improve the current solution.
+ * @author imoya
+ *
+ */
+public class BoundedRandomDescent extends RandomDescent<CSPSolution> {
+
+	private final CSPProblem csp;
+	
+	public BoundedRandomDescent(CSPProblem csp,
+			Neighbourhood<? super CSPSolution> neighbourhood) {
+		super(csp, neighbourhood);
+		this.csp = csp;
+	}
+
+	@Override
+	protected boolean isImprovement(Move<? super CSPSolution> move) {
+		CSPSolution current = getCurrentSolution();
+		
+		if(move instanceof CSPMove && csp.canPeek(current)) {
+			//Improving moves reduce the number of collisions.
+			return validateMove(move).passed() 
+					&& ((CSPMove)move).getDelta(current, 0)<0;
+		}
+		
+		return super.isImprovement(move);
+	}
+}
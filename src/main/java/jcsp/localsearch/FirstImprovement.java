@@ -6,7 +6,6 @@ import jcsp.CSPProblem;
 import jcsp.CSPSolution;
 
 import org.jamesframework.core.search.SingleNeighbourhoodSearch;
-import org.jamesframework.core.search.algo.RandomDescent;
 import org.jamesframework.core.search.neigh.Neighbourhood;
 
 public class FirstImprovement extends LocalSearch{
@@ -18,14 +17,14 @@ public class FirstImprovement extends LocalSearch{
 	@Override
 	public SingleNeighbourhoodSearch<CSPSolution> createLocalSearch(
 			CSPProblem csp, Neighbourhood<CSPSolution> neighbourhood) {
-		return new RandomDescent<CSPSolution>(csp, neighbourhood);
+		return new BoundedRandomDescent(csp, neighbourhood);
 	}
 
 	@Override
 	public SingleNeighbourhoodSearch<CSPSolution> createLocalSearch(
 			CSPProblem csp) {
 		checkNeighbourhood();
-		return new RandomDescent<CSPSolution>(csp, neighbourhood.get(0));
+		return new BoundedRandomDescent(csp, neighbourhood.get(0));
 	}
 
 }
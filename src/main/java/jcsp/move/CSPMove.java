@@ -0,0 +1,22 @@
+package jcsp.move;
+
+import jcsp.CSPSolution;
+
+/**
+ * Move able to compute the fitness variation it would produce without 
+ * modifying the solution.
+ * @author imoya
+ *
+ */
+public interface CSPMove extends PermutationMove{
+
+	public int getDelta(CSPSolution sol);
+	
+	/**
+	 * The exact variation is only returned when it is lower than the bound.
+	 * @param sol
+	 * @param bound
+	 * @return
+	 */
+	public int getDelta(CSPSolution sol, int bound);
+}
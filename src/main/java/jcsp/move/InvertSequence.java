@@ -2,9 +2,7 @@ package jcsp.move;
 
 import jcsp.CSPSolution;
 
-import org.jamesframework.core.search.neigh.Move;
-
-public class InvertSequence implements Move<CSPSolution>{
+public class InvertSequence implements CSPMove{
 	
 	public final int firstIndex, secondIndex;
 	
@@ -27,6 +25,14 @@ public class InvertSequence implements Move<CSPSolution>{
 		solution.invert(firstIndex, secondIndex);
 	}
 	
+	public int getDelta(CSPSolution solution) {
+		return solution.deltaInvert(firstIndex, secondIndex);
+	}
+	
+	public int getDelta(CSPSolution solution, int bound) {
+		return solution.deltaInvert(firstIndex, secondIndex, bound);
+	}
+
 	@Override
 	public String toString() {
 		return "InvertSequence [firstIndex=" + firstIndex + ", secondIndex="
@@ -0,0 +1,15 @@
+package jcsp.move;
+
+import jcsp.CSPSolution;
+
+import org.jamesframework.core.search.neigh.Move;
+
+/**
+ * Move which only reorders the cars of a complete sequence, so the demand 
+ * of each class is kept and a valid solution remains valid.
+ * @author imoya
+ *
+ */
+public interface PermutationMove extends Move<CSPSolution>{
+
+}
@@ -3,9 +3,8 @@ package jcsp.move;
 import jcsp.CSPSolution;
 
 import org.apache.commons.lang3.ArrayUtils;
-import org.jamesframework.core.search.neigh.Move;
 
-public class ShuffleSequence implements Move<CSPSolution>{
+public class ShuffleSequence implements PermutationMove{
 
 	public final int firstIndex, secondIndex;
 	
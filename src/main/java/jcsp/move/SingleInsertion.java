@@ -2,9 +2,7 @@ package jcsp.move;
 
 import jcsp.CSPSolution;
 
-import org.jamesframework.core.search.neigh.Move;
-
-public class SingleInsertion implements Move<CSPSolution>{
+public class SingleInsertion implements CSPMove{
 
 	public final int newPos;
 	public final int oldPos;
@@ -30,6 +28,14 @@ public class SingleInsertion implements Move<CSPSolution>{
 		sol.insert(newPos, oldPos);
 	}
 
+	public int getDelta(CSPSolution sol) {
+		return sol.deltaInsert(oldPos, newPos);
+	}
+	
+	public int getDelta(CSPSolution sol, int bound) {
+		return sol.deltaInsert(oldPos, newPos, bound);
+	}
+
 	@Override
 	public String toString() {
 		return "SingleInsertion [newPos=" + newPos + ", oldPos=" + oldPos + "]";
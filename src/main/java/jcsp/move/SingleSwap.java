@@ -2,9 +2,7 @@ package jcsp.move;
 
 import jcsp.CSPSolution;
 
-import org.jamesframework.core.search.neigh.Move;
-
-public class SingleSwap implements Move<CSPSolution>{
+public class SingleSwap implements CSPMove{
 
 	public final int firstIndex, secondIndex;
 	
@@ -29,6 +27,14 @@ public class SingleSwap implements Move<CSPSolution>{
 		sol.swap(firstIndex, secondIndex);
 	}
 
+	public int getDelta(CSPSolution sol) {
+		return sol.deltaSwap(firstIndex, secondIndex);
+	}
+	
+	public int getDelta(CSPSolution sol, int bound) {
+		return sol.deltaSwap(firstIndex, secondIndex, bound);
+	}
+
 	@Override
 	public String toString() {
 		return "SingleSwap [firstIndex=" + firstIndex + ", secondIndex="
@@ -1,13 +1,10 @@
 package jcsp.neighbourhood;
 
-import gnu.trove.list.array.TIntArrayList;
-
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
-import jcsp.CSPProblem;
 import jcsp.CSPSolution;
 
 import org.jamesframework.core.search.neigh.Move;
@@ -86,29 +83,13 @@ public abstract class CSPNeighbourhood implements Neighbourhood<CSPSolution>{
 		return indexes;
 	}
 	
+	/**
+	 * Positions starting a colliding window, in ascending order.
+	 * @param sol
+	 * @return
+	 */
 	protected int[] getConflicted(CSPSolution sol) {
-		int[][] colissions = sol.getColissionMatrix();
-		
-		CSPProblem problem = sol.getProblem();
-		int demand = problem.getCarsDemand();
-		int options = problem.getNumOptions();
-		
-		TIntArrayList intList = new TIntArrayList(sol.getProblem().getCarsDemand());
-		
-		for (int pos = 0; pos<demand; pos++) {
-			int o = 0;
-			while(o<options) {
-				if (colissions[o][pos]==0) {
-					o++;
-				} else {
-					intList.add(pos);
-					break;
-				}
-			}
-		}
-		int[] conflicted = intList.toArray();
-		
-		return conflicted;
+		return sol.getConflicts().toSortedArray();
 	}
 
 	@Override
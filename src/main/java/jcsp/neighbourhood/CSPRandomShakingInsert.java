@@ -1,8 +1,6 @@
 package jcsp.neighbourhood;
 
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import jcsp.CSPSolution;
 import jcsp.move.MultipleMoves;
@@ -25,26 +23,10 @@ public class CSPRandomShakingInsert extends CSPNeighbourhood{
 		return null;
 	}
 	
-	private Set<Integer> getColissions(int [][] colissions) {
-		Set<Integer> colissioningIndexes = new HashSet<Integer>();
-		
-		for (int i=0; i<colissions.length; i++) {
-			for (int j=0; j<colissions[i].length; j++) {
-				if(colissions[i][j]!=0) {
-					colissioningIndexes.add(j);
-				}
-			}
-		}
-		
-		return colissioningIndexes;
-	}
-
 	@Override
 	public Move<CSPSolution> getRandomMove(CSPSolution sol) {
 		
-		Set<Integer> conflictingIndexes = getColissions(sol.getColissionMatrix());
-		Integer[] indexes = {};
-		indexes = conflictingIndexes.toArray(indexes);
+		int[] indexes = getConflicted(sol);
 		int numIndexes = indexes.length;
 
 		int numInserts = Math.min(numIndexes, this.maxInserts);
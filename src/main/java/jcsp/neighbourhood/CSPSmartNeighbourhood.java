@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import jcsp.CSPProblem;
+import jcsp.ConflictIndex;
 import jcsp.CSPSolution;
 
 import org.jamesframework.core.search.neigh.Move;
@@ -12,9 +13,9 @@ public abstract class CSPSmartNeighbourhood extends CSPNeighbourhood{
 	
 	@Override
 	public Move<CSPSolution> getRandomMove(CSPSolution solution) {
-		int[] conflicted = getConflicted(solution);
+		ConflictIndex conflicted = solution.getConflicts();
 		
-		int numConflicts = conflicted.length;
+		int numConflicts = conflicted.size();
 		
 		if(numConflicts == 0) {
 			return null;
@@ -25,7 +26,7 @@ public abstract class CSPSmartNeighbourhood extends CSPNeighbourhood{
 		//Fist index is
 		int randomConflictedIndex = csp.random.nextInt(numConflicts);
 		
-		int firstIndex = conflicted[randomConflictedIndex];
+		int firstIndex = conflicted.get(randomConflictedIndex);
 		
 		Move<CSPSolution> invertion = getRandomSmartMove(firstIndex,csp);
 		return invertion;
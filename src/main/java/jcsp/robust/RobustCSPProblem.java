@@ -66,11 +66,7 @@ public class RobustCSPProblem extends CSPProblem {
 				robustIndex++;
 			} else {
 				//Normal car
-				for (int option=0; option<numOptions; option++) {
-					
-					if(requirements[carClass][option] == 0) {
-						continue;
-					}
+				for (int option : requiredOptions[carClass]) {
 					
 					// Q
 					int total = this.options[TOTAL_INDEX][option];
@@ -245,6 +241,24 @@ public class RobustCSPProblem extends CSPProblem {
 		return new RobustCSPSolution(this,sequence);
 	}
 	
+	/**
+	 * Special classes and production plans refer to the original classes, 
+	 * so robust problems are not reduced.
+	 */
+	@Override
+	public CSPProblem reduceProfiles() {
+		return this;
+	}
+	
+	/**
+	 * Robust solutions do not keep the collision structures required for 
+	 * peeking, so moves are always applied and undone.
+	 */
+	@Override
+	public boolean canPeek(CSPSolution sol) {
+		return false;
+	}
+	
 	//Validation
 	public Validation validate(CSPSolution sol) {
 		
@@ -9,8 +9,12 @@ import jcsp.CSPSolution;
 
 public class RobustCSPSolution extends CSPSolution {
 
+	//Robust fitness is not an integer number of collisions.
+	private double fitness;
+
 	public RobustCSPSolution(CSPProblem csp, int[] sequence) {
-		super(new int[0][0], csp, sequence);
+		//Robust solutions keep no incremental structures.
+		super(new byte[0], null, null, null, null, csp, sequence);
 		fitness = csp.evaluateRestrictions(sequence, sequence.length-1);
 	}
 
@@ -22,6 +26,11 @@ public class RobustCSPSolution extends CSPSolution {
 		fitness = csp.evaluateRestrictions(sequence, sequence.length-1);
 	}
 	
+	@Override
+	public double getFitness() {
+		return fitness;
+	}
+	
 	@Override
 	public Solution copy() {
 		return new RobustCSPSolution(
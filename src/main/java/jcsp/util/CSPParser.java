@@ -51,6 +51,18 @@ public class CSPParser {
 		return new RobustnessEvaluator(csp, numSpecial, productionPlans);
 	}
 	
+	/**
+	 * Loads a problem and merges its classes with identical options into 
+	 * profiles (see CSPProblem.reduceProfiles). Solvers should work on this 
+	 * problem and map their sequences back with CSPProblem.restoreClasses.
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static CSPProblem loadProfiles(String path) throws IOException {
+		return load(path).reduceProfiles();
+	}
+	
 	public static CSPProblem load(String path) throws IOException {
 		if(path==null || path.equals("")) {
 			throw new IllegalArgumentException(
@@ -0,0 +1,88 @@
+package jcsp.util;
+
+import java.util.Arrays;
+
+/**
+ * Set of integers in [0, capacity) supporting add, remove, contains and
+ * access by index in constant time. Elements are kept in a dense array,
+ * so their order changes when elements are removed.
+ * @author imoya
+ *
+ */
+public class IndexedIntSet {
+
+	private static final int ABSENT = -1;
+
+	private final int[] elements;
+	private final int[] indexOf;
+	private int size;
+
+	public IndexedIntSet(int capacity) {
+		elements = new int [capacity];
+		indexOf = new int [capacity];
+		Arrays.fill(indexOf, ABSENT);
+		size = 0;
+	}
+
+	public IndexedIntSet(IndexedIntSet other) {
+		elements = Arrays.copyOf(other.elements, other.elements.length);
+		indexOf = Arrays.copyOf(other.indexOf, other.indexOf.length);
+		size = other.size;
+	}
+
+	public boolean add(int value) {
+		if(indexOf[value]!=ABSENT) {
+			return false;
+		}
+		elements[size] = value;
+		indexOf[value] = size;
+		size++;
+
+		return true;
+	}
+
+	/**
+	 * The last element takes the place of the removed one.
+	 * @param value
+	 * @return
+	 */
+	public boolean remove(int value) {
+		int index = indexOf[value];
+		if(index==ABSENT) {
+			return false;
+		}
+		size--;
+		int last = elements[size];
+		elements[index] = last;
+		indexOf[last] = index;
+		indexOf[value] = ABSENT;
+
+		return true;
+	}
+
+	public boolean contains(int value) {
+		return indexOf[value]!=ABSENT;
+	}
+
+	public int get(int index) {
+		if(index>=size) {
+			throw new IndexOutOfBoundsException(
+					"Index "+index+" exceeds set size "+size);
+		}
+		return elements[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Elements sorted in ascending order.
+	 * @return
+	 */
+	public int[] toSortedArray() {
+		int[] sorted = Arrays.copyOf(elements, size);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+}
@@ -115,6 +115,36 @@ public class ArrayFunctions {
 		return index;
 	}
 	
+	/**
+	 * Moves the k greatest values among the first size elements to the 
+	 * front of the array, sorted in decreasing order. The items array is 
+	 * reordered along with the values. The selection is stable: ties keep 
+	 * the lowest index first.
+	 * @param values
+	 * @param items
+	 * @param size
+	 * @param k
+	 */
+	public final static void selectGreatest(double[] values, int[] items, 
+			int size, int k) {
+		for (int i=0; i<k; i++) {
+			int max = i;
+			for (int j=i+1; j<size; j++) {
+				if(values[j]>values[max]) {
+					max = j;
+				}
+			}
+			
+			//Shifting instead of swapping keeps the order of the rest.
+			double value = values[max];
+			int item = items[max];
+			System.arraycopy(values, i, values, i+1, max-i);
+			System.arraycopy(items, i, items, i+1, max-i);
+			values[i] = value;
+			items[i] = item;
+		}
+	}
+	
 	/**
 	 * Sub array from begin position, excluding end position.
 	 * @param array
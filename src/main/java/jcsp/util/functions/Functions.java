@@ -79,6 +79,31 @@ public class Functions {
         return Double.longBitsToDouble(((long) y) << 32);
     }
 	
+	/**
+	 * Exact power for non negative integer exponents, computed by repeated
+	 * squaring.
+	 * @param a base value.
+	 * @param b exponent value.
+	 * @return a raised to b.
+	 */
+	public static double pow(final double a, final int b) {
+		if(b<0) {
+			throw new IllegalArgumentException(
+					"Negative exponent "+b+" is not supported.");
+		}
+		double result = 1.0;
+		double base = a;
+		int exponent = b;
+		while(exponent>0) {
+			if((exponent & 1)!=0) {
+				result*=base;
+			}
+			base*=base;
+			exponent>>>=1;
+		}
+		return result;
+	}
+	
 	/**
 	 * Calculates the multiplier for marketing plans with the given quality value.
 	 * @param input the quality input value.
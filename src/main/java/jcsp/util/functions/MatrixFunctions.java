@@ -483,6 +483,22 @@ public class MatrixFunctions {
 		return newMatrix;
 	}
 	
+	/**
+	 * Creates a copy of the given long matrix.
+	 * @param matrix the matrix to be copied.
+	 * @return a copy of the matrix.
+	 */
+	public final static long[][] copyMatrix(long[][] matrix) {
+		int rows = matrix.length;
+		long[][] newMatrix = new long [rows][];
+		
+		for (int i=0; i<rows; i++) {
+			newMatrix[i] = Arrays.copyOf(matrix[i], matrix[i].length);
+		}
+		
+		return newMatrix;
+	}
+	
 	/**
 	 * Creates a copy of the given 3d integer matrix.
 	 * @param matrix a 3d integer matrix
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.commons.lang3.ArrayUtils;
 import org.jamesframework.core.problems.constraints.validations.Validation;
 import org.jamesframework.core.search.neigh.Move;
 import org.jamesframework.core.search.neigh.Neighbourhood;
@@ -18,6 +19,7 @@ import jcsp.algo.GRASP;
 import jcsp.experiment.beans.ACOBean;
 import jcsp.experiment.beans.GRASPBean;
 import jcsp.localsearch.FirstImprovement;
+import jcsp.move.CSPMove;
 import jcsp.neighbourhood.CSPInsertionNeighbourhood;
 import jcsp.neighbourhood.CSPInvertionNeighbourhood;
 import jcsp.neighbourhood.CSPShuffleNeighbourhood;
@@ -182,6 +184,25 @@ public class CSPProblemTest {
 		assertTrue( assertion );
 	}
 	
+	@Test
+	public void bitsetEvaluation() {
+		
+		boolean assertion = true;
+		
+		for (int t = 0; t<numberOfTries; t++) {
+			CSPSolution sol = mediumCSP.createRandomSolution();
+			
+			int[] sequence = sol.getSequence();
+			
+			double debugFitness = mediumCSP.evaluateRestrictions(sequence,sequence.length);
+			double bitsetFitness = CSPBitsetEvaluation.evaluate(mediumCSP, sequence);
+			
+			assertion &= bitsetFitness == debugFitness;
+		}
+		
+		assertTrue( assertion );
+	}
+	
 	@Test
 	public void constructiveEvaluation() {
 		boolean assertion = true;
@@ -207,6 +228,19 @@ public class CSPProblemTest {
 			
 			assertion &= fitness == debugFitness;
 			
+			//Built structures are ready for the search.
+			CSPSolution evaluated = new CSPSolution(
+					null, mediumCSP, greedy.getSequence().clone());
+			for (int o=0; o<mediumCSP.getNumOptions(); o++) {
+				for (int car=0; car<mediumCSP.getCarsDemand(); car++) {
+					assertion &= greedy.getExcess(o, car) == evaluated.getExcess(o, car);
+					assertion &= greedy.getOccupancy(o, car) == evaluated.getOccupancy(o, car);
+				}
+			}
+			greedy.swap(0, mediumCSP.getCarsDemand()-1);
+			assertion &= greedy.getCollisions() == CSPBitsetEvaluation.evaluate(
+					mediumCSP, greedy.getSequence());
+			
 			alpha+=alphaIncrement;
 		}
 		
@@ -296,6 +330,157 @@ public class CSPProblemTest {
 		assertTrue( assertion );
 	}
 	
+	@Test
+	public void peekEvaluation() {
+		boolean assertion = true;
+		
+		List<Neighbourhood<CSPSolution>> neighbourhoods = new ArrayList<Neighbourhood<CSPSolution>>();
+		neighbourhoods.add(new CSPSwapNeighbourhood());
+		neighbourhoods.add(new CSPInsertionNeighbourhood());
+		neighbourhoods.add(new CSPInvertionNeighbourhood());
+		
+		for (int t = 0; t<numberOfTries; t++) {
+			CSPSolution sol = mediumCSP.createRandomSolution();
+			double fitness = sol.getFitness();
+			int[] sequence = sol.getSequence().clone();
+			
+			for (Neighbourhood<CSPSolution> neighbourhood : neighbourhoods) {
+				Move<? super CSPSolution> move = neighbourhood.getRandomMove(sol);
+				
+				double peekFitness = mediumCSP.evaluate(move, sol, 
+						mediumCSP.evaluate(sol)).getValue();
+				
+				assertion &= mediumCSP.validate(move, sol, 
+						mediumCSP.validate(sol)).passed();
+				
+				//Peeking should leave the solution untouched.
+				assertion &= Arrays.equals(sequence, sol.getSequence());
+				assertion &= fitness == sol.getFitness();
+				
+				move.apply(sol);
+				assertion &= peekFitness == sol.getFitness();
+				move.undo(sol);
+			}
+		}
+		
+		assertTrue( assertion );
+	}
+	
+	@Test
+	public void boundedPeekEvaluation() {
+		boolean assertion = true;
+		
+		List<Neighbourhood<CSPSolution>> neighbourhoods = new ArrayList<Neighbourhood<CSPSolution>>();
+		neighbourhoods.add(new CSPSwapNeighbourhood());
+		neighbourhoods.add(new CSPInsertionNeighbourhood());
+		neighbourhoods.add(new CSPInvertionNeighbourhood());
+		
+		for (int t = 0; t<numberOfTries; t++) {
+			CSPSolution sol = mediumCSP.createRandomSolution();
+			
+			for (Neighbourhood<CSPSolution> neighbourhood : neighbourhoods) {
+				CSPMove move = (CSPMove) neighbourhood.getRandomMove(sol);
+				
+				int delta = move.getDelta(sol);
+				int bound = t%5 - 2;
+				int boundedDelta = move.getDelta(sol, bound);
+				
+				if(delta<bound) {
+					assertion &= boundedDelta == delta;
+				} else {
+					assertion &= boundedDelta >= bound;
+				}
+			}
+		}
+		
+		assertTrue( assertion );
+	}
+	
+	@Test
+	public void profileReduction() throws IOException {
+		boolean assertion = true;
+		
+		CSPProblem csp = CSPParser.load("instances/75/pb_75-03.txt");
+		csp.random = mediumCSP.random;
+		CSPProblem reduced = csp.reduceProfiles();
+		
+		assertion &= reduced.getNumClasses() < csp.getNumClasses();
+		
+		for (int t = 0; t<numberOfTries/100; t++) {
+			CSPSolution sol = reduced.createRandomSolution();
+			
+			int[] restored = reduced.restoreClasses(sol.getSequence());
+			CSPSolution original = new CSPSolution(null, csp, restored);
+			
+			assertion &= csp.validate(original).passed();
+			assertion &= original.getFitness() == sol.getFitness();
+		}
+		
+		assertTrue( assertion );
+	}
+	
+	@Test
+	public void conflictIndex() {
+		boolean assertion = true;
+		
+		List<Neighbourhood<CSPSolution>> neighbourhoods = new ArrayList<Neighbourhood<CSPSolution>>();
+		neighbourhoods.add(new CSPSwapNeighbourhood());
+		neighbourhoods.add(new CSPInsertionNeighbourhood());
+		neighbourhoods.add(new CSPInvertionNeighbourhood());
+		
+		for (int t = 0; t<numberOfTries/10; t++) {
+			CSPSolution sol = mediumCSP.createRandomSolution();
+			
+			for (Neighbourhood<CSPSolution> neighbourhood : neighbourhoods) {
+				neighbourhood.getRandomMove(sol).apply(sol);
+			}
+			
+			int[][] colissions = mediumCSP.createExcessMatrix(sol.getSequence());
+			for (int car = 0; car<mediumCSP.getCarsDemand(); car++) {
+				boolean conflicted = false;
+				for (int o = 0; o<mediumCSP.getNumOptions(); o++) {
+					conflicted |= colissions[o][car]>0;
+				}
+				assertion &= conflicted == sol.getConflicts().isConflicted(car);
+			}
+		}
+		
+		assertTrue( assertion );
+	}
+	
+	@Test
+	public void optionLists() {
+		boolean assertion = true;
+		
+		int[][] requirements = mediumCSP.getRequirements();
+		
+		for (int c=0; c<mediumCSP.getNumClasses(); c++) {
+			int[] required = mediumCSP.getRequiredOptions(c);
+			int found = 0;
+			for (int o=0; o<mediumCSP.getNumOptions(); o++) {
+				if(requirements[c][o]>0) {
+					assertion &= found<required.length && required[found]==o;
+					found++;
+				}
+			}
+			assertion &= found==required.length;
+			
+			for (int other=0; other<mediumCSP.getNumClasses(); other++) {
+				int[] differing = mediumCSP.getDifferingOptions(c, other);
+				int differences = 0;
+				for (int o=0; o<mediumCSP.getNumOptions(); o++) {
+					if((requirements[c][o]>0) != (requirements[other][o]>0)) {
+						assertion &= ArrayUtils.contains(differing, o);
+						differences++;
+					}
+				}
+				assertion &= differences==differing.length;
+			}
+		}
+		
+		assertTrue( assertion );
+	}
+	
 	@Test
 	public void shuffleEvaluation() {
 		boolean assertion = true;
@@ -409,6 +594,53 @@ public class CSPProblemTest {
 	    }
 	}
 	
+	@Test
+	public void excessConstructor() {
+		boolean assertion = true;
+		
+		final int numOptions = mediumCSP.getNumOptions();
+		final int carsDemand = mediumCSP.getCarsDemand();
+		
+		for (CSPSolution sol : mediumSols) {
+			byte[] excess = new byte [numOptions*carsDemand];
+			for (int o=0; o<numOptions; o++) {
+				for (int car=0; car<carsDemand; car++) {
+					excess[o*carsDemand+car] = (byte)sol.getExcess(o, car);
+				}
+			}
+			
+			//Moves are available on solutions built from a given excess.
+			CSPSolution built = new CSPSolution(
+					excess, mediumCSP, sol.getSequence().clone());
+			int delta = built.deltaSwap(0, carsDemand-1);
+			built.swap(0, carsDemand-1);
+			built.insert(1, carsDemand/2);
+			
+			int fitness = (int)MatrixFunctions.addMatrix(
+					mediumCSP.createExcessMatrix(built.getSequence()));
+			assertion &= built.getFitness() == fitness;
+			assertion &= sol.getFitness()+delta 
+					== MatrixFunctions.addMatrix(mediumCSP.createExcessMatrix(
+							swapped(sol.getSequence(), 0, carsDemand-1)));
+		}
+		
+		try {
+			new CSPSolution(new byte[1], mediumCSP, mediumSols.get(0).getSequence());
+			assertion = false;
+		} catch (IllegalArgumentException e) {
+			//Expected.
+		}
+		
+		assertTrue( assertion );
+	}
+	
+	private static int[] swapped(int[] sequence, int i, int j) {
+		int[] copy = sequence.clone();
+		copy[i] = sequence[j];
+		copy[j] = sequence[i];
+		return copy;
+	}
+	
 	@Test
 	public void ACOConstruction() {
 		
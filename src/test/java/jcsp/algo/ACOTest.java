@@ -0,0 +1,194 @@
+package jcsp.algo;
+
+import static jcsp.algo.ACOTestFixture.acoBean;
+import static jcsp.algo.ACOTestFixture.mmasBean;
+import static jcsp.algo.ACOTestFixture.seed;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jamesframework.core.search.neigh.Neighbourhood;
+import org.junit.Test;
+
+import jcsp.CSPProblem;
+import jcsp.CSPSolution;
+import jcsp.experiment.beans.ACOBean;
+import jcsp.localsearch.FirstImprovement;
+import jcsp.neighbourhood.CSPInsertionNeighbourhood;
+import jcsp.neighbourhood.CSPSwapNeighbourhood;
+import jcsp.util.functions.MatrixFunctions;
+
+public class ACOTest {
+	
+	private CSPProblem mediumCSP;
+	
+	public ACOTest() throws IOException {
+		mediumCSP = ACOTestFixture.load(ACOTestFixture.mediumInstance);
+	}
+	
+	@Test
+	public void parallelACO() {
+		boolean assertion = true;
+		
+		for (int seedIndex = 0; seedIndex<5; seedIndex++) {
+			int[] previous = null;
+			
+			//Same seed, same results whatever the number of threads.
+			for (int threads = 2; threads<=4; threads+=2) {
+				ACOBean bean = acoBean(50, null, threads);
+				seed(mediumCSP, seedIndex);
+				
+				ACO aco = new ACO(mediumCSP, bean, false);
+				aco.optimize();
+				
+				CSPSolution best = aco.getBest();
+				int[] sequence = best.getSequence();
+				
+				assertion &= mediumCSP.validate(best).passed();
+				assertion &= MatrixFunctions.addMatrix(mediumCSP.createExcessMatrix(
+						sequence)) == best.getFitness();
+				if(previous!=null) {
+					assertion &= Arrays.equals(previous, sequence);
+				}
+				previous = sequence;
+			}
+		}
+		
+		assertTrue( assertion );
+	}
+	
+	@Test
+	public void candidateACO() {
+		boolean assertion = true;
+		
+		for (int seedIndex = 0; seedIndex<5; seedIndex++) {
+			for (int threads = 1; threads<=2; threads++) {
+				ACOBean bean = acoBean(20, null, threads);
+				bean.candidates = 2;
+				seed(mediumCSP, seedIndex);
+				
+				ACO aco = new ACO(mediumCSP, bean, false);
+				try {
+					aco.checkAnts();
+				} catch (Exception e) {
+					fail();
+				}
+				
+				aco = new ACO(mediumCSP, bean, false);
+				aco.optimize();
+				
+				CSPSolution best = aco.getBest();
+				
+				assertion &= mediumCSP.validate(best).passed();
+				assertion &= MatrixFunctions.addMatrix(mediumCSP.createExcessMatrix(
+						best.getSequence())) == best.getFitness();
+			}
+		}
+		
+		assertTrue( assertion );
+	}
+	
+	@Test
+	public void searchedAntsACO() {
+		List<Neighbourhood<CSPSolution>> neighbourhoods 
+			= new ArrayList<Neighbourhood<CSPSolution>>();
+		neighbourhoods.add(new CSPSwapNeighbourhood());
+		neighbourhoods.add(new CSPInsertionNeighbourhood());
+		
+		boolean assertion = true;
+		
+		for (int seedIndex = 0; seedIndex<5; seedIndex++) {
+			int[] previous = null;
+			
+			//Same seed, same results whatever the number of threads.
+			for (int threads = 2; threads<=4; threads+=2) {
+				ACOBean bean = acoBean(20, 
+						new FirstImprovement(neighbourhoods), threads);
+				bean.searchedAnts = 3;
+				seed(mediumCSP, seedIndex);
+				
+				ACO aco = new ACO(mediumCSP, bean, false);
+				aco.optimize();
+				
+				CSPSolution best = aco.getBest();
+				int[] sequence = best.getSequence();
+				
+				assertion &= best.getProblem() == mediumCSP;
+				assertion &= mediumCSP.validate(best).passed();
+				assertion &= MatrixFunctions.addMatrix(mediumCSP.createExcessMatrix(
+						sequence)) == best.getFitness();
+				if(previous!=null) {
+					assertion &= Arrays.equals(previous, sequence);
+				}
+				previous = sequence;
+			}
+		}
+		
+		assertTrue( assertion );
+	}
+	
+	@Test
+	public void checkpointACO() throws IOException {
+		CSPProblem csp = ACOTestFixture.load(ACOTestFixture.largeInstance);
+		
+		File checkpoint = File.createTempFile("aco", ".checkpoint");
+		checkpoint.deleteOnExit();
+		
+		boolean assertion = true;
+		
+		for (boolean maxMin : new boolean[]{false, true}) {
+			int[] sequences[] = new int [2][];
+			
+			//Uninterrupted run, then a run stopped halfway and resumed.
+			for (int run = 0; run<2; run++) {
+				checkpoint.delete();
+				seed(csp, 0);
+				
+				ACO aco = null;
+				for (int maxCycles : run==0 ? new int[]{20} : new int[]{10, 20}) {
+					ACOBean bean = maxMin 
+							? mmasBean(maxCycles, 5) 
+							: acoBean(maxCycles, null, 1);
+					bean.checkpointFile = checkpoint.getPath();
+					bean.checkpointFrequency = 5;
+					
+					aco = (ACO) bean.createAlgorithmInstance(csp, false);
+					aco.optimize();
+				}
+				sequences[run] = aco.getBest().getSequence();
+				assertion &= MatrixFunctions.addMatrix(csp.createExcessMatrix(
+						sequences[run])) == aco.getBest().getFitness();
+			}
+			
+			assertion &= Arrays.equals(sequences[0], sequences[1]);
+		}
+		
+		//The trail of a previous run starts one on a related instance.
+		ACOBean bean = acoBean(5, null, 1);
+		bean.initialTrail = checkpoint.getPath();
+		
+		seed(mediumCSP, 0);
+		ACO aco = new ACO(mediumCSP, bean, false);
+		aco.optimize();
+		assertion &= mediumCSP.validate(aco.getBest()).passed();
+		
+		//No class in common, the only one requires a sixth option.
+		CSPProblem unrelated = new CSPProblem(4, 6, 1, 
+				new int[][]{{1, 2, 1, 2, 1, 1}, {2, 3, 3, 5, 5, 2}}, 
+				new int[][]{{0, 0, 0, 0, 0, 1}}, new int[]{4});
+		unrelated.random = mediumCSP.random;
+		try {
+			new ACO(unrelated, bean, false).optimize();
+			assertion = false;
+		} catch (IllegalArgumentException e) {
+			//Expected.
+		}
+		
+		assertTrue( assertion );
+	}
+}
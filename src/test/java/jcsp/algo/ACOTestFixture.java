@@ -0,0 +1,65 @@
+package jcsp.algo;
+
+import java.io.IOException;
+
+import jcsp.CSPProblem;
+import jcsp.experiment.beans.ACOBean;
+import jcsp.experiment.beans.MMASBean;
+import jcsp.localsearch.LocalSearch;
+import jcsp.util.CSPParser;
+import jcsp.util.random.RandomizerFactory;
+import jcsp.util.random.RandomizerFactory.RandomizerAlgorithm;
+import jcsp.util.random.RandomizerUtils;
+
+/**
+ * Parameters and instances shared by the ant colony tests.
+ */
+final class ACOTestFixture {
+	
+	public final static String mediumInstance = "instances/60/pb_60-05.txt";
+	public final static String largeInstance = "instances/200/pb_200_01.txt";
+	
+	//ACO Parameters
+	public final static int ants = 15;
+	public final static double alpha = 4;
+	public final static double beta = 6;
+	public final static double delta = 3;
+	
+	public final static double q0 = 0.9;
+	public final static double tau0 = 0.005;
+	public final static double localRho = 0.99;
+	public final static double globalRho = 0.99;
+	
+	//MMAS Parameters
+	public final static double mmasAlpha = 2;
+	public final static double mmasGlobalRho = 0.98;
+	public final static double pBest = 0.05;
+	public final static int bestSoFarFrequency = 10;
+	
+	private ACOTestFixture() {}
+	
+	public static ACOBean acoBean(int maxCycles, LocalSearch localSearch, 
+			int threads) {
+		return new ACOBean(ants, maxCycles, alpha, beta, delta, q0, tau0, 
+				localRho, globalRho, localSearch, null, threads);
+	}
+	
+	public static MMASBean mmasBean(int maxCycles, int stagnationCycles) {
+		return new MMASBean(ants, maxCycles, mmasAlpha, beta, delta, q0, tau0, 
+				mmasGlobalRho, null, null, pBest, bestSoFarFrequency, 
+				stagnationCycles);
+	}
+	
+	public static CSPProblem load(String file) throws IOException {
+		CSPProblem csp = CSPParser.load(file);
+		seed(csp, 0);
+		return csp;
+	}
+	
+	public static void seed(CSPProblem csp, int seedIndex) {
+		csp.random = RandomizerFactory.createRandomizer(
+				RandomizerAlgorithm.XOR_SHIFT_128_PLUS_FAST, 
+				RandomizerUtils.PRIME_SEEDS[seedIndex]
+				);
+	}
+}
@@ -0,0 +1,72 @@
+package jcsp.algo;
+
+import static jcsp.algo.ACOTestFixture.mmasBean;
+import static jcsp.algo.ACOTestFixture.seed;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import jcsp.CSPProblem;
+import jcsp.CSPSolution;
+import jcsp.experiment.beans.AlgorithmBean;
+import jcsp.experiment.beans.MMASBean;
+import jcsp.util.functions.MatrixFunctions;
+import jcsp.util.io.ConfigFileReader;
+
+public class MMASTest {
+	
+	private CSPProblem mediumCSP;
+	
+	public MMASTest() throws IOException {
+		mediumCSP = ACOTestFixture.load(ACOTestFixture.mediumInstance);
+	}
+	
+	@Test
+	public void MMASConfig() throws Exception {
+		boolean assertion = true;
+		
+		AlgorithmBean bean = AlgorithmBean.getBean(new File("config/MMAS.csp"));
+		
+		assertion &= bean instanceof MMASBean;
+		assertion &= ((MMASBean)bean).localRho == 1.0;
+		
+		//Local trail updates are rejected.
+		ConfigFileReader reader = new ConfigFileReader();
+		reader.readConfigFile("config/MMAS.csp");
+		reader.getProperties().setProperty("localRho", "0.99");
+		try {
+			new MMASBean().readConfigFile(reader);
+			assertion = false;
+		} catch (IllegalArgumentException e) {
+			//Expected.
+		}
+		
+		assertTrue( assertion );
+	}
+	
+	@Test
+	public void MMASEvaluation() {
+		final MMASBean bean = mmasBean(200, 20);
+		
+		boolean assertion = true;
+		
+		for (int seedIndex = 0; seedIndex<5; seedIndex++) {
+			seed(mediumCSP, seedIndex);
+			
+			MMAS mmas = new MMAS(mediumCSP, bean, false);
+			mmas.optimize();
+			
+			CSPSolution best = mmas.getBest();
+			
+			assertion &= mediumCSP.validate(best).passed();
+			assertion &= MatrixFunctions.addMatrix(mediumCSP.createExcessMatrix(
+					best.getSequence())) == best.getFitness();
+			assertion &= best.getFitness() == mmas.getFinalFitness();
+		}
+		
+		assertTrue( assertion );
+	}
+}
@@ -0,0 +1,35 @@
+package jcsp.algo;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PheromoneMatrixTest {
+	
+	@Test
+	public void pheromoneMatrix() {
+		boolean assertion = true;
+		
+		final int numClasses = 5;
+		final int maxQ = 3;
+		
+		PheromoneMatrix doubleTrail = PheromoneMatrix.create(numClasses, maxQ, false);
+		PheromoneMatrix floatTrail = PheromoneMatrix.create(numClasses, maxQ, true);
+		
+		for (PheromoneMatrix trail : new PheromoneMatrix[]{doubleTrail, floatTrail}) {
+			trail.fill(0.5);
+			trail.add(1, 2, 0, 0.25);
+			trail.update(3, 4, 2, 0.5, 0.25);
+			trail.scale(2.0);
+			
+			assertion &= trail.get(1, 2, 0) == 1.5;
+			assertion &= trail.get(2, 1, 0) == 1.0;
+			assertion &= trail.get(3, 4, 2) == 1.0;
+			
+			trail.set(1, 0, 0, 0.5);
+			assertion &= trail.get(1, 0, 0) == 0.5;
+		}
+		
+		assertTrue( assertion );
+	}
+}
@@ -0,0 +1,27 @@
+package jcsp.util.functions;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ArrayFunctionsTest {
+	
+	@Test
+	public void selectGreatest() {
+		boolean assertion = true;
+		
+		double[] values = {1.0, 3.0, 2.0, 3.0, 1.0, 3.0, 2.0};
+		int[] items = {0, 1, 2, 3, 4, 5, 6};
+		
+		ArrayFunctions.selectGreatest(values, items, values.length, 4);
+		
+		//Tied values keep the order of their indexes, selected or not.
+		assertion &= Arrays.equals(items, new int[]{1, 3, 5, 2, 0, 4, 6});
+		assertion &= Arrays.equals(values, 
+				new double[]{3.0, 3.0, 3.0, 2.0, 1.0, 1.0, 2.0});
+		
+		assertTrue( assertion );
+	}
+}
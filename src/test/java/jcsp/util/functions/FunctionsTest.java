@@ -0,0 +1,32 @@
+package jcsp.util.functions;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FunctionsTest {
+	
+	@Test
+	public void integerPower() {
+		boolean assertion = true;
+		
+		double[] bases = {0.0, 0.005, 0.25, 0.5, 1.0, 1.7, 3.0};
+		
+		for (double base : bases) {
+			for (int exponent=0; exponent<=8; exponent++) {
+				double exact = Math.pow(base, exponent);
+				assertion &= Math.abs(Functions.pow(base, exponent) - exact) 
+						<= 1e-12 * Math.max(1.0, exact);
+			}
+		}
+		
+		try {
+			Functions.pow(2.0, -1);
+			assertion = false;
+		} catch (IllegalArgumentException e) {
+			//Expected.
+		}
+		
+		assertTrue( assertion );
+	}
+}